@@ -1,19 +1,34 @@
 package br.zapparolli.entity;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+import javax.persistence.UniqueConstraint;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Entity for storing Basket data
@@ -25,9 +40,16 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "BASKET")
+@Table(name = "BASKET",
+        indexes = @Index(name = "IDX_BASKET_CUSTOMER_OPEN", columnList = "CUSTOMER_ID, IS_OPEN"),
+        uniqueConstraints = @UniqueConstraint(name = Basket.OPEN_CUSTOMER_CONSTRAINT, columnNames = "OPEN_CUSTOMER_ID"))
 public class Basket {
 
+    /**
+     * Name of the constraint that allows a single open basket per customer
+     */
+    public static final String OPEN_CUSTOMER_CONSTRAINT = "UK_BASKET_OPEN_CUSTOMER";
+
     /**
      * Auto-generated primary key
      */
@@ -36,6 +58,13 @@ public class Basket {
     @Column(name = "BASKET_ID", nullable = false)
     private Long id;
 
+    /**
+     * Version of the row, incremented on every change to detect concurrent updates
+     */
+    @Version
+    @Column(name = "VERSION")
+    private Long version;
+
     /**
      * Customer identification
      */
@@ -49,11 +78,136 @@ public class Basket {
     private boolean isOpen;
 
     /**
-     * List of items in the basket
+     * The customer identification while the basket is open, empty after the checkout.
+     * The unique constraint on this column guarantees a single open basket per customer
+     */
+    @Column(name = "OPEN_CUSTOMER_ID")
+    private String openCustomerId;
+
+    /**
+     * List of items in the basket, changed only by {@link #addItem(BasketItem)} and {@link #setItems(List)}, so the
+     * index of the items stays in sync with it
      */
-    @OneToMany(mappedBy = "basket", cascade = CascadeType.PERSIST)
+    @OneToMany(mappedBy = "basket", cascade = { CascadeType.PERSIST, CascadeType.MERGE })
     private List<BasketItem> items;
 
+    /**
+     * The items indexed by the product identification, so a line is found without scanning the list.
+     * It's built on first use, kept in sync by {@link #addItem(BasketItem)} and discarded by {@link #setItems(List)}
+     */
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, BasketItem> itemsByProduct;
+
+    /**
+     * List of combos completed by the items of the basket
+     */
+    @OneToMany(mappedBy = "basket", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<BasketCombo> combos;
+
+    /**
+     * Sum of the raw values of the items, kept up to date as the items change.
+     * Baskets stored before the column existed have it empty until they are read again
+     */
+    @Column(name = "RAW_VALUE")
+    private BigInteger rawValue;
+
+    /**
+     * Sum of the discounts of the items and the combos, kept up to date as the items change
+     */
+    @Column(name = "DISCOUNT")
+    private BigInteger discount;
+
+    /**
+     * The total price of the basket in cents, kept up to date as the items change
+     */
+    @Column(name = "TOTAL")
+    private BigInteger total;
+
+    /**
+     * Sequence of the journal event that checked out the basket, empty if the journal is not used.
+     * It tells if the checkout was already written when the journal is replayed
+     */
+    @Column(name = "JOURNAL_SEQUENCE")
+    private Long journalSequence;
+
+    /**
+     * Opens or closes the basket, releasing the customer to open a new one when closed
+     *
+     * @param isOpen Indicates if the basket is open
+     */
+    public void setOpen(boolean isOpen) {
+        this.isOpen = isOpen;
+        this.openCustomerId = isOpen ? customerId : null;
+    }
+
+    /**
+     * Get the items of the basket
+     *
+     * @return Returns a read-only view of the items or null if the basket has no list of items
+     */
+    public List<BasketItem> getItems() {
+        return Objects.isNull(items) ? null : Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Replaces the items of the basket, discarding the index of the previous ones
+     *
+     * @param items The new items
+     */
+    public void setItems(List<BasketItem> items) {
+        this.items = items;
+        this.itemsByProduct = null;
+    }
+
+    /**
+     * Finds the item of the given product
+     *
+     * @param productId The product identification
+     * @return Returns the item or an empty {@link Optional}
+     */
+    public Optional<BasketItem> findItem(String productId) {
+        return Optional.ofNullable(getIndex().get(productId));
+    }
+
+    /**
+     * Adds an item to the basket, keeping the index of the items up to date
+     *
+     * @param basketItem The item to be added
+     */
+    public void addItem(BasketItem basketItem) {
+        var index = getIndex();
+        items.add(basketItem);
+        index.put(basketItem.getProductId(), basketItem);
+    }
+
+    /**
+     * Get the items indexed by the product identification
+     *
+     * @return Returns a read-only view of the index
+     */
+    public Map<String, BasketItem> getItemsByProduct() {
+        return Collections.unmodifiableMap(getIndex());
+    }
+
+    /**
+     * Get the index of the items, building it on first use, as when the items are loaded by Hibernate or replaced
+     *
+     * @return Returns the index
+     */
+    private Map<String, BasketItem> getIndex() {
+        if (Objects.isNull(itemsByProduct)) {
+            itemsByProduct = new HashMap<>();
+            Objects.requireNonNullElse(items, List.<BasketItem>of())
+                    .forEach(item -> itemsByProduct.put(item.getProductId(), item));
+        }
+
+        return itemsByProduct;
+    }
+
     /**
      * Create a new basket with the given customer identification
      *
@@ -64,7 +218,12 @@ public class Basket {
         return Basket.builder()
                 .customerId(customerId)
                 .isOpen(true)
+                .openCustomerId(customerId)
                 .items(new ArrayList<>())
+                .combos(new ArrayList<>())
+                .rawValue(BigInteger.ZERO)
+                .discount(BigInteger.ZERO)
+                .total(BigInteger.ZERO)
                 .build();
     }
 
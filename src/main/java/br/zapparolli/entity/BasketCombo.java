@@ -0,0 +1,87 @@
+package br.zapparolli.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import java.math.BigInteger;
+
+/**
+ * A combo applied to a basket
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "BASKET_COMBO")
+public class BasketCombo {
+
+    /**
+     * Auto-generated primary key
+     */
+    @Id
+    @GeneratedValue
+    @Column(name = "BASKET_COMBO_ID", nullable = false)
+    private Long id;
+
+    /**
+     * Basket associated with the combo
+     */
+    @ToString.Exclude
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "BASKET_ID", referencedColumnName = "BASKET_ID", nullable = false)
+    private Basket basket;
+
+    /**
+     * The combo applied
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "COMBO_ID", referencedColumnName = "COMBO_ID", nullable = false)
+    private Combo combo;
+
+    /**
+     * Number of times the combo was completed with the basket items
+     */
+    @Column(name = "TIMES", nullable = false)
+    private BigInteger times;
+
+    /**
+     * The total discount given by the combo
+     */
+    @Column(name = "DISCOUNT", nullable = false)
+    private BigInteger discount;
+
+    /**
+     * Create a new combo applied to the basket
+     *
+     * @param basket Basket which the combo will be added to
+     * @param combo The combo applied
+     * @return Returns the created object
+     */
+    public static BasketCombo newBasketCombo(Basket basket, Combo combo) {
+        var basketCombo = BasketCombo.builder()
+                .basket(basket)
+                .combo(combo)
+                .times(BigInteger.ZERO)
+                .discount(BigInteger.ZERO)
+                .build();
+
+        // Add the combo to the basket
+        basket.getCombos().add(basketCombo);
+
+        return basketCombo;
+    }
+
+}
@@ -13,9 +13,10 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
-import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.math.BigInteger;
+import java.util.Objects;
 
 /**
  * Single item of a basket
@@ -38,12 +39,25 @@ public class BasketItem {
     @Column(name = "BASKET_ITEM_ID", nullable = false)
     private Long id;
 
+    /**
+     * Version of the row, incremented on every change to detect concurrent updates
+     */
+    @Version
+    @Column(name = "VERSION")
+    private Long version;
+
     /**
      * Identification of the product
      */
     @Column(name = "PRODUCT_ID", nullable = false)
     private String productId;
 
+    /**
+     * Name of the product at the moment it was added to the basket
+     */
+    @Column(name = "PRODUCT_NAME")
+    private String productName;
+
     /**
      * Actual price of a single unit of the product at the moment of basket creation
      */
@@ -67,10 +81,67 @@ public class BasketItem {
     /**
      * The promotion associated with the item
      */
-    @OneToOne
+    @ManyToOne
     @JoinColumn(name = "PROMOTION_ID", referencedColumnName = "PROMOTION_ID")
     private Promotion promotion;
 
+    /**
+     * Get the price of the item, without discount
+     *
+     * @return Returns the amount multiplied by the unit price
+     */
+    public BigInteger getRawValue() {
+        return BigInteger.valueOf(getRawValueCents());
+    }
+
+    /**
+     * Get the discount received by the promotion of the item
+     *
+     * @return Returns the discount or zero if there is no promotion
+     */
+    public BigInteger getDiscount() {
+        return BigInteger.valueOf(getDiscountCents());
+    }
+
+    /**
+     * Get the total price of the item
+     *
+     * @return Returns the raw value minus the discount
+     */
+    public BigInteger getTotal() {
+        return BigInteger.valueOf(getTotalCents());
+    }
+
+    /**
+     * Get the price of the item in cents, without discount
+     *
+     * @throws ArithmeticException Throws an exception if the value does not fit in a long
+     * @return Returns the amount multiplied by the unit price
+     */
+    public long getRawValueCents() {
+        return Math.multiplyExact(amount.longValueExact(), unitPrice.longValueExact());
+    }
+
+    /**
+     * Get the discount received by the promotion of the item, in cents
+     *
+     * @throws ArithmeticException Throws an exception if the value does not fit in a long
+     * @return Returns the discount or zero if there is no promotion
+     */
+    public long getDiscountCents() {
+        return Objects.isNull(promotion) ? 0 : Math.multiplyExact(promotion.getUnitDiscount().longValueExact(), amount.longValueExact());
+    }
+
+    /**
+     * Get the total price of the item in cents
+     *
+     * @throws ArithmeticException Throws an exception if the value does not fit in a long
+     * @return Returns the raw value minus the discount
+     */
+    public long getTotalCents() {
+        return Math.subtractExact(getRawValueCents(), getDiscountCents());
+    }
+
     /**
      * Create a new basket item from the given data
      *
@@ -83,12 +154,13 @@ public class BasketItem {
         var basketItem = BasketItem.builder()
                 .basket(basket)
                 .productId(product.getId())
+                .productName(product.getName())
                 .unitPrice(product.getPrice())
                 .amount(BigInteger.ZERO) // The amount is initially zero
                 .build();
 
         // Add the item to the basket
-        basket.getItems().add(basketItem);
+        basket.addItem(basketItem);
 
         return basketItem;
     }
@@ -0,0 +1,112 @@
+package br.zapparolli.entity;
+
+import br.zapparolli.model.NewCombo;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Entity for storing combo promotions, which involve several units or products
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "COMBO")
+public class Combo {
+
+    /**
+     * Auto-generated primary key
+     */
+    @Id
+    @GeneratedValue
+    @Column(name = "COMBO_ID", nullable = false)
+    private Long id;
+
+    /**
+     * The name shown to the customer
+     */
+    @Column(name = "NAME", nullable = false)
+    private String name;
+
+    /**
+     * The type of the combo
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "TYPE", nullable = false)
+    private ComboType type;
+
+    /**
+     * The products required by the combo. A {@link ComboType#BUY_X_GET_Y} combo has a single product.
+     * The products of all combos loaded by a query are loaded at once
+     */
+    @Fetch(FetchMode.SUBSELECT)
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "COMBO_ITEM", joinColumns = @JoinColumn(name = "COMBO_ID"))
+    private List<ComboItem> items;
+
+    /**
+     * The discount given for each complete {@link ComboType#BUNDLE} combo
+     */
+    @Column(name = "DISCOUNT")
+    private BigInteger discount;
+
+    /**
+     * The units given for free for each complete {@link ComboType#BUY_X_GET_Y} combo
+     */
+    @Column(name = "FREE_AMOUNT")
+    private BigInteger freeAmount;
+
+    /**
+     * Get the units of a product consumed each time the combo is applied, including the free ones
+     *
+     * @param item The product of the combo
+     * @return Returns the units required
+     */
+    public BigInteger getRequiredAmount(ComboItem item) {
+        return type == ComboType.BUY_X_GET_Y ? item.getAmount().add(freeAmount) : item.getAmount();
+    }
+
+    /**
+     * Create a new Combo with the given data
+     *
+     * @param newCombo The combo data
+     * @return Returns the entity created
+     */
+    public static Combo newCombo(NewCombo newCombo) {
+        return Combo.builder()
+                .name(newCombo.getName())
+                .type(newCombo.getType())
+                .items(newCombo.getItems().stream()
+                        .map(item -> ComboItem.builder()
+                                .productId(item.getProductId())
+                                .amount(item.getAmount())
+                                .build())
+                        .collect(Collectors.toList()))
+                .discount(newCombo.getDiscount())
+                .freeAmount(newCombo.getFreeAmount())
+                .build();
+    }
+
+}
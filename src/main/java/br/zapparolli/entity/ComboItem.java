@@ -0,0 +1,36 @@
+package br.zapparolli.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.math.BigInteger;
+
+/**
+ * A product required by a combo
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class ComboItem {
+
+    /**
+     * The identification of the product
+     */
+    @Column(name = "PRODUCT_ID", nullable = false)
+    private String productId;
+
+    /**
+     * The units of the product that must be purchased
+     */
+    @Column(name = "AMOUNT", nullable = false)
+    private BigInteger amount;
+
+}
@@ -0,0 +1,20 @@
+package br.zapparolli.entity;
+
+/**
+ * Types of combo promotions
+ *
+ * @author lczapparolli
+ */
+public enum ComboType {
+
+    /**
+     * All products of the combo must be purchased together to receive a fixed discount
+     */
+    BUNDLE,
+
+    /**
+     * Buying a number of units of a product gives some extra units for free
+     */
+    BUY_X_GET_Y
+
+}
@@ -19,10 +19,17 @@ public enum ErrorMessage {
     ERROR_INVALID_AMOUNT("The pushased amount must be a positive number", Response.Status.BAD_REQUEST),
     ERROR_INVALID_CUSTOMER_ID("The customer identification should be provided", Response.Status.BAD_REQUEST),
     ERROR_NO_OPEN_BASKET("This customer does not have an open basket.", Response.Status.NOT_FOUND),
+    ERROR_BATCH_EMPTY("The batch must have at least one item", Response.Status.BAD_REQUEST),
+    ERROR_BASKET_CONFLICT("The basket was changed by another request at the same time, please try again", Response.Status.CONFLICT),
     ERROR_PROMOTION_INVALID_AMOUNT("The minimum amount must be a positive number", Response.Status.BAD_REQUEST),
     ERROR_PROMOTION_INVALID_DISCOUNT("The discount must be a positive number", Response.Status.BAD_REQUEST),
     ERROR_PROMOTION_GREATER_DISCOUNT("The discount value must be less than the product value", Response.Status.BAD_REQUEST),
-    ERROR_PROMOTION_ALREADY_EXISTS("There is already a promotion for this product", Response.Status.BAD_REQUEST);
+    ERROR_PROMOTION_ALREADY_EXISTS("There is already a promotion for this product with the same minimum amount", Response.Status.BAD_REQUEST),
+    ERROR_COMBO_INVALID_NAME("The combo name should be provided", Response.Status.BAD_REQUEST),
+    ERROR_COMBO_INVALID_TYPE("The combo type should be provided", Response.Status.BAD_REQUEST),
+    ERROR_COMBO_INVALID_ITEMS("The combo must have distinct products with positive amounts", Response.Status.BAD_REQUEST),
+    ERROR_COMBO_INVALID_DISCOUNT("The discount must be a positive number less than the value of the products", Response.Status.BAD_REQUEST),
+    ERROR_COMBO_INVALID_FREE_AMOUNT("A buy X get Y combo must have a single product and a positive free amount", Response.Status.BAD_REQUEST);
 
     /**
      * The message that should be returned to de caller
@@ -1,11 +1,17 @@
 package br.zapparolli.exception;
 
 import br.zapparolli.model.ErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Maps a QikServeException to an error response
@@ -15,6 +21,28 @@ import javax.ws.rs.ext.Provider;
 @Provider
 public class QikServeExceptionMapper implements ExceptionMapper<QikServeException> {
 
+    @Inject
+    MeterRegistry meterRegistry;
+
+    /**
+     * Counts the error responses by error message
+     */
+    private final Map<ErrorMessage, Counter> errors = new EnumMap<>(ErrorMessage.class);
+
+    /**
+     * Registers a counter for each error message, so all of them are exposed even before the first error
+     */
+    @PostConstruct
+    void initMetrics() {
+        for (var errorMessage : ErrorMessage.values()) {
+            errors.put(errorMessage, Counter.builder("api.errors")
+                    .tag("error", errorMessage.name())
+                    .tag("status", String.valueOf(errorMessage.getStatus().getStatusCode()))
+                    .description("Error responses by error message")
+                    .register(meterRegistry));
+        }
+    }
+
     /**
      * Converts the exception to a response with error status
      * @param exception The exception caught
@@ -22,6 +50,8 @@ public class QikServeExceptionMapper implements ExceptionMapper<QikServeExceptio
      */
     @Override
     public Response toResponse(QikServeException exception) {
+        errors.get(exception.getErrorMessage()).increment();
+
         return Response.status(exception.getErrorMessage().getStatus())
                 .type(MediaType.APPLICATION_JSON_TYPE)
                 .entity(ErrorResponse.newErrorResponse(exception.getErrorMessage().getMessage()))
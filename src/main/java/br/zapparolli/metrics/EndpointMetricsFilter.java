@@ -0,0 +1,258 @@
+package br.zapparolli.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.SessionFactory;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+import org.jboss.resteasy.reactive.server.SimpleResourceInfo;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.Response;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Times the requests of each endpoint, keeps the number of requests in progress and, for debugging, counts the database
+ * work of each request. The database work is read from the Hibernate statistics, which are shared by all requests, so
+ * the work of requests running at the same time is counted by each of them. It's only counted when the header or the
+ * summaries are enabled, which is meant for isolated requests, as in the tests
+ *
+ * @author lczapparolli
+ */
+public class EndpointMetricsFilter {
+
+    /**
+     * Name of the timer of the requests
+     */
+    static final String REQUESTS = "endpoint.requests";
+
+    /**
+     * Name of the gauge of the requests in progress
+     */
+    static final String IN_FLIGHT = "endpoint.in.flight";
+
+    /**
+     * Name of the summary of the SQL statements prepared by each request
+     */
+    static final String STATEMENTS = "endpoint.statements";
+
+    /**
+     * Name of the summary of the entities loaded by each request
+     */
+    static final String ENTITY_LOADS = "endpoint.entity.loads";
+
+    /**
+     * Name of the summary of the collections fetched by each request
+     */
+    static final String COLLECTION_FETCHES = "endpoint.collection.fetches";
+
+    /**
+     * Response header with the database work of the request
+     */
+    static final String QUERY_STATISTICS_HEADER = "X-Query-Statistics";
+
+    /**
+     * Request property that keeps the measurement until the response
+     */
+    private static final String MEASUREMENT_PROPERTY = EndpointMetricsFilter.class.getName();
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    /**
+     * Indicates if the database work of the request is returned in a response header, for debugging
+     */
+    @ConfigProperty(name = "qikserve.metrics.query-statistics-header", defaultValue = "false")
+    boolean queryStatisticsHeader;
+
+    /**
+     * Indicates if the database work of the requests is published as summaries of each endpoint
+     */
+    @ConfigProperty(name = "qikserve.metrics.query-statistics-summaries", defaultValue = "false")
+    boolean queryStatisticsSummaries;
+
+    /**
+     * The meters of each endpoint, indexed by resource class and method
+     */
+    private final Map<String, EndpointMeters> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Starts measuring a request, once the endpoint is known
+     *
+     * @param requestContext The request
+     * @param resourceInfo The resource method that handles the request
+     */
+    @ServerRequestFilter
+    public void onRequest(ContainerRequestContext requestContext, SimpleResourceInfo resourceInfo) {
+        var endpoint = endpoints.computeIfAbsent(resourceInfo.getResourceClass().getSimpleName() + "." + resourceInfo.getMethodName(),
+                EndpointMeters::new);
+        endpoint.inFlight.incrementAndGet();
+        // The database work is only counted when it's published and the statistics are enabled
+        var statistics = sessionFactory.getStatistics();
+        var queries = (queryStatisticsHeader || queryStatisticsSummaries) && statistics.isStatisticsEnabled()
+                ? QueryStatistics.of(statistics)
+                : null;
+        requestContext.setProperty(MEASUREMENT_PROPERTY, new Measurement(endpoint, System.nanoTime(), queries));
+    }
+
+    /**
+     * Records the time of the request, by the family of the response status, and its database work
+     *
+     * @param requestContext The request
+     * @param responseContext The response
+     */
+    @ServerResponseFilter
+    public void onResponse(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        // Requests that did not match an endpoint are not measured
+        var measurement = (Measurement) requestContext.getProperty(MEASUREMENT_PROPERTY);
+        if (Objects.isNull(measurement)) {
+            return;
+        }
+        requestContext.removeProperty(MEASUREMENT_PROPERTY);
+
+        measurement.endpoint.inFlight.decrementAndGet();
+        measurement.endpoint.getTimer(Response.Status.Family.familyOf(responseContext.getStatus()))
+                .record(System.nanoTime() - measurement.start, TimeUnit.NANOSECONDS);
+
+        if (Objects.nonNull(measurement.queries)) {
+            var queries = QueryStatistics.of(sessionFactory.getStatistics()).since(measurement.queries);
+            if (queryStatisticsSummaries) {
+                measurement.endpoint.recordQueries(queries);
+            }
+            if (queryStatisticsHeader) {
+                responseContext.getHeaders().putSingle(QUERY_STATISTICS_HEADER, queries.toHeader());
+            }
+        }
+    }
+
+    /**
+     * The meters of an endpoint
+     */
+    private class EndpointMeters {
+
+        private final String name;
+
+        /**
+         * Number of requests in progress, kept by a strong reference as the registry only holds a weak one
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * The timers by family of the response status
+         */
+        private final Map<Response.Status.Family, Timer> timers = new ConcurrentHashMap<>();
+
+        /**
+         * The summaries of the database work, null if they are not published
+         */
+        private final DistributionSummary statements;
+
+        private final DistributionSummary entityLoads;
+
+        private final DistributionSummary collectionFetches;
+
+        /**
+         * Registers the meters of the endpoint
+         *
+         * @param name The resource class and method
+         */
+        private EndpointMeters(String name) {
+            this.name = name;
+            meterRegistry.gauge(IN_FLIGHT, Tags.of("endpoint", name), inFlight);
+            if (queryStatisticsSummaries) {
+                statements = registerSummary(STATEMENTS, "SQL statements prepared by each request of the endpoint");
+                entityLoads = registerSummary(ENTITY_LOADS, "Entities loaded by each request of the endpoint");
+                collectionFetches = registerSummary(COLLECTION_FETCHES, "Collections fetched after their owner by each request of the endpoint");
+            } else {
+                statements = null;
+                entityLoads = null;
+                collectionFetches = null;
+            }
+        }
+
+        /**
+         * Registers a summary of the database work of the endpoint
+         *
+         * @param summaryName The name of the summary
+         * @param description The description of the summary
+         * @return Returns the summary
+         */
+        private DistributionSummary registerSummary(String summaryName, String description) {
+            return DistributionSummary.builder(summaryName)
+                    .tag("endpoint", name)
+                    .description(description)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Records the database work of a request
+         *
+         * @param queries The work done during the request
+         */
+        private void recordQueries(QueryStatistics queries) {
+            statements.record(queries.getStatements());
+            entityLoads.record(queries.getEntityLoads());
+            collectionFetches.record(queries.getCollectionFetches());
+        }
+
+        /**
+         * Get the timer of the responses of a status family, registering it on the first response
+         *
+         * @param family The family of the response status
+         * @return Returns the timer
+         */
+        private Timer getTimer(Response.Status.Family family) {
+            return timers.computeIfAbsent(family, key -> Timer.builder(REQUESTS)
+                    .tag("endpoint", name)
+                    .tag("outcome", key.name())
+                    .description("Requests handled by the endpoint")
+                    .register(meterRegistry));
+        }
+
+    }
+
+    /**
+     * A request being measured
+     */
+    private static class Measurement {
+
+        private final EndpointMeters endpoint;
+
+        /**
+         * The time when the request started, from {@link System#nanoTime()}
+         */
+        private final long start;
+
+        /**
+         * The totals of the Hibernate statistics when the request started, null if they are disabled
+         */
+        private final QueryStatistics queries;
+
+        /**
+         * Creates the measurement
+         *
+         * @param endpoint The meters of the endpoint
+         * @param start The time when the request started
+         * @param queries The totals of the Hibernate statistics when the request started
+         */
+        private Measurement(EndpointMeters endpoint, long start, QueryStatistics queries) {
+            this.endpoint = endpoint;
+            this.start = start;
+            this.queries = queries;
+        }
+
+    }
+
+}
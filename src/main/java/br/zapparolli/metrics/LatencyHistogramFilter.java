@@ -0,0 +1,63 @@
+package br.zapparolli.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Publishes the latency timers as histograms, with fixed buckets from 1 ms to the maximum expected latency.
+ * Recording a value only increments a bucket, so the histograms can stay on at full load. The percentiles are not
+ * calculated by the application, they are queried from the buckets, which can be summed across instances
+ *
+ * @author lczapparolli
+ */
+@Singleton
+public class LatencyHistogramFilter implements MeterFilter {
+
+    /**
+     * The timers published as histograms
+     */
+    private static final List<String> LATENCY_TIMERS = List.of(
+            "http.server.requests",
+            EndpointMetricsFilter.REQUESTS,
+            "products.api.requests",
+            "repository.queries");
+
+    /**
+     * Lowest latency distinguished by the histograms
+     */
+    private static final Duration MIN_EXPECTED_LATENCY = Duration.ofMillis(1);
+
+    /**
+     * Highest latency distinguished by the histograms, longer values are counted in the last bucket
+     */
+    @ConfigProperty(name = "qikserve.metrics.max-expected-latency", defaultValue = "PT30S")
+    Duration maxExpectedLatency;
+
+    /**
+     * Enables the histogram of the latency timers
+     *
+     * @param id The identification of the meter
+     * @param config The configuration of the meter
+     * @return Returns the configuration with the histogram
+     */
+    @Override
+    public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+        if (id.getType() != Meter.Type.TIMER || !LATENCY_TIMERS.contains(id.getName())) {
+            return config;
+        }
+
+        return DistributionStatisticConfig.builder()
+                .percentilesHistogram(true)
+                .minimumExpectedValue((double) MIN_EXPECTED_LATENCY.toNanos())
+                .maximumExpectedValue((double) maxExpectedLatency.toNanos())
+                .build()
+                .merge(config);
+    }
+
+}
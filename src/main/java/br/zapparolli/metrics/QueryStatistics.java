@@ -0,0 +1,72 @@
+package br.zapparolli.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.stat.Statistics;
+
+/**
+ * The database work counted by the Hibernate statistics, either as totals or as the work done between two readings
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryStatistics {
+
+    /**
+     * Number of SQL statements prepared
+     */
+    private long statements;
+
+    /**
+     * Number of entities loaded from the database
+     */
+    private long entityLoads;
+
+    /**
+     * Number of collections initialized after their owner was loaded
+     */
+    private long collectionFetches;
+
+    /**
+     * Reads the current totals of the statistics
+     *
+     * @param statistics The statistics of the session factory
+     * @return Returns the totals
+     */
+    public static QueryStatistics of(Statistics statistics) {
+        return QueryStatistics.builder()
+                .statements(statistics.getPrepareStatementCount())
+                .entityLoads(statistics.getEntityLoadCount())
+                .collectionFetches(statistics.getCollectionFetchCount())
+                .build();
+    }
+
+    /**
+     * Calculates the work done since a previous reading
+     *
+     * @param start The totals read before the work
+     * @return Returns the difference between these totals and the previous ones
+     */
+    public QueryStatistics since(QueryStatistics start) {
+        return QueryStatistics.builder()
+                .statements(statements - start.statements)
+                .entityLoads(entityLoads - start.entityLoads)
+                .collectionFetches(collectionFetches - start.collectionFetches)
+                .build();
+    }
+
+    /**
+     * Formats the values as a response header
+     *
+     * @return Returns the values in the format {@code statements=2;entity-loads=3;collection-fetches=0}
+     */
+    public String toHeader() {
+        return String.format("statements=%d;entity-loads=%d;collection-fetches=%d", statements, entityLoads, collectionFetches);
+    }
+
+}
@@ -0,0 +1,35 @@
+package br.zapparolli.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The data of a combo completed in a basket
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class AppliedCombo {
+
+    /**
+     * The identification of the combo
+     */
+    private Long comboId;
+
+    /**
+     * The name of the combo
+     */
+    private String name;
+
+    /**
+     * Number of times the combo was completed
+     */
+    private long times;
+
+    /**
+     * The total discount given by the combo
+     */
+    private long discount;
+
+}
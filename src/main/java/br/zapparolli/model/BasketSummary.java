@@ -0,0 +1,45 @@
+package br.zapparolli.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The summary of a basket, without its items
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class BasketSummary {
+
+    /**
+     * The basket identification
+     */
+    private Long id;
+
+    /**
+     * The customer identification
+     */
+    private String customerId;
+
+    /**
+     * Indicates if the basket is still open
+     */
+    private boolean open;
+
+    /**
+     * The sum of raw values of the items
+     */
+    private long rawValue;
+
+    /**
+     * The total discount given to the basket
+     */
+    private long discount;
+
+    /**
+     * The total price of the basket in cents
+     */
+    private long total;
+
+}
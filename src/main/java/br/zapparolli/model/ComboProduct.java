@@ -0,0 +1,27 @@
+package br.zapparolli.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigInteger;
+
+/**
+ * The data of a product required by a combo
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class ComboProduct {
+
+    /**
+     * The identification of the product
+     */
+    private String productId;
+
+    /**
+     * The units of the product that must be purchased
+     */
+    private BigInteger amount;
+
+}
@@ -3,7 +3,6 @@ package br.zapparolli.model;
 import lombok.Builder;
 import lombok.Data;
 
-import java.math.BigInteger;
 import java.util.List;
 
 /**
@@ -25,19 +24,24 @@ public class InsertedBasket {
      */
     private List<InsertedBasketItem> items;
 
+    /**
+     * The list of combos completed by the items
+     */
+    private List<AppliedCombo> combos;
+
     /**
      * The sum of raw values of the items
      */
-    private BigInteger rawValue;
+    private long rawValue;
 
     /**
-     * The total discount given to the basket
+     * The total discount given to the basket, including the combos
      */
-    private BigInteger discount;
+    private long discount;
 
     /**
      * The total price of the basket in cents
      */
-    private BigInteger total;
+    private long total;
 
 }
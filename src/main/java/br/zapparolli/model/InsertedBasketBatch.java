@@ -0,0 +1,27 @@
+package br.zapparolli.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The result of a batch addition
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class InsertedBasketBatch {
+
+    /**
+     * The basket with the added items, empty if no item could be added
+     */
+    private InsertedBasket basket;
+
+    /**
+     * The items that could not be added
+     */
+    private List<RejectedItem> rejectedItems;
+
+}
@@ -3,8 +3,6 @@ package br.zapparolli.model;
 import lombok.Builder;
 import lombok.Data;
 
-import java.math.BigInteger;
-
 /**
  * The data of a single item of a basket
  *
@@ -27,26 +25,26 @@ public class InsertedBasketItem {
     /**
      * The price of a unit of the product
      */
-    private BigInteger unitPrice;
+    private long unitPrice;
 
     /**
      * The amount purchased of the product
      */
-    private BigInteger amount;
+    private long amount;
 
     /**
      * The price of the item, without discount
      */
-    private BigInteger rawValue;
+    private long rawValue;
 
     /**
      * The discount received by a promotion
      */
-    private BigInteger discount;
+    private long discount;
 
     /**
      * The total price of the item
      */
-    private BigInteger itemTotal;
+    private long itemTotal;
 
 }
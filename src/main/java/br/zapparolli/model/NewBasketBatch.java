@@ -0,0 +1,32 @@
+package br.zapparolli.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The data needed to add several items to a basket at once
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class NewBasketBatch {
+
+    /**
+     * The customer identification
+     */
+    private String customerId;
+
+    /**
+     * The items to be added
+     */
+    private List<NewBasketBatchItem> items;
+
+    /**
+     * Indicates if the invalid items are rejected without aborting the other ones
+     */
+    private boolean partial;
+
+}
@@ -0,0 +1,27 @@
+package br.zapparolli.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigInteger;
+
+/**
+ * An item of a batch addition
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class NewBasketBatchItem {
+
+    /**
+     * The product identification
+     */
+    private String productId;
+
+    /**
+     * The units purchased of the product
+     */
+    private BigInteger amount;
+
+}
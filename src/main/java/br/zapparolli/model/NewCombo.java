@@ -0,0 +1,44 @@
+package br.zapparolli.model;
+
+import br.zapparolli.entity.ComboType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * The data needed to create a new combo
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class NewCombo {
+
+    /**
+     * The name shown to the customer
+     */
+    private String name;
+
+    /**
+     * The type of the combo
+     */
+    private ComboType type;
+
+    /**
+     * The products required by the combo
+     */
+    private List<ComboProduct> items;
+
+    /**
+     * The discount given for each complete bundle
+     */
+    private BigInteger discount;
+
+    /**
+     * The units given for free in a buy X get Y combo
+     */
+    private BigInteger freeAmount;
+
+}
@@ -0,0 +1,30 @@
+package br.zapparolli.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * An item of a batch addition that could not be added
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class RejectedItem {
+
+    /**
+     * The position of the item in the batch, starting at zero
+     */
+    private int index;
+
+    /**
+     * The product identification
+     */
+    private String productId;
+
+    /**
+     * The reason the item was rejected
+     */
+    private String message;
+
+}
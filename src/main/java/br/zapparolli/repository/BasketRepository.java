@@ -1,10 +1,14 @@
 package br.zapparolli.repository;
 
 import br.zapparolli.entity.Basket;
+import io.micrometer.core.annotation.Timed;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import io.quarkus.panache.common.Parameters;
+import io.quarkus.panache.common.Sort;
+import org.hibernate.jpa.QueryHints;
 
 import javax.enterprise.context.ApplicationScoped;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -13,10 +17,14 @@ import java.util.Optional;
  * @author lczapparolli
  */
 @ApplicationScoped
+@Timed("repository.queries")
 public class BasketRepository implements PanacheRepository<Basket> {
 
     /**
-     * Finds an open basket for the giving user, if there is no open baskets return an empty {@link Optional}
+     * Finds an open basket for the giving user, if there is no open baskets return an empty {@link Optional}.
+     * The items, their promotions and the combos of the basket are loaded by the same queries, so the number of
+     * statements doesn't depend on the number of items. The queries are not limited, as Hibernate would apply the
+     * limit in memory over the joined rows; a customer has a single open basket anyway
      *
      * @param customerId Identification of the customer
      * @return Return the option with or without the basket found
@@ -25,8 +33,47 @@ public class BasketRepository implements PanacheRepository<Basket> {
         var parameters = Parameters.with("isOpen", true)
                 .and("customerId", customerId);
 
-        return find("isOpen = :isOpen and customerId = :customerId", parameters)
-                .firstResultOptional();
+        // Two bags can't be fetched by the same query, so the combos are loaded by a second one
+        var basket = find("select distinct b from Basket b left join fetch b.items i left join fetch i.promotion "
+                + "where b.isOpen = :isOpen and b.customerId = :customerId", parameters)
+                .withHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                .singleResultOptional();
+        basket.ifPresent(this::fetchCombos);
+
+        return basket;
+    }
+
+    /**
+     * Loads the combos of a basket already loaded in the session
+     *
+     * @param basket The basket whose combos will be loaded
+     */
+    private void fetchCombos(Basket basket) {
+        find("select distinct b from Basket b left join fetch b.combos c left join fetch c.combo where b.id = :id",
+                Parameters.with("id", basket.getId()))
+                .withHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                // The combos are attached to the basket in the session, so the result itself is not needed
+                .list();
+    }
+
+    /**
+     * Finds all baskets of the giving customer, the most recent first
+     *
+     * @param customerId Identification of the customer
+     * @return Return the list of baskets
+     */
+    public List<Basket> findByCustomer(String customerId) {
+        return list("customerId", Sort.descending("id"), customerId);
     }
-    
+
+    /**
+     * Checks if the checkout of the giving journal event was already written
+     *
+     * @param journalSequence Sequence of the checkout event
+     * @return Return true if a basket was closed by the event
+     */
+    public boolean existsByJournalSequence(long journalSequence) {
+        return count("journalSequence", journalSequence) > 0;
+    }
+
 }
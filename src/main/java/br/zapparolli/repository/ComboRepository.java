@@ -0,0 +1,18 @@
+package br.zapparolli.repository;
+
+import br.zapparolli.entity.Combo;
+import io.micrometer.core.annotation.Timed;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Repository for managing Combo data
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+@Timed("repository.queries")
+public class ComboRepository implements PanacheRepository<Combo> {
+
+}
@@ -1,6 +1,7 @@
 package br.zapparolli.repository;
 
 import br.zapparolli.entity.Promotion;
+import io.micrometer.core.annotation.Timed;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import io.quarkus.panache.common.Parameters;
 
@@ -14,33 +15,22 @@ import java.util.Optional;
  * @author lczapparolli
  */
 @ApplicationScoped
+@Timed("repository.queries")
 public class PromotionRepository implements PanacheRepository<Promotion> {
 
     /**
-     * Find if there is already a promotion for the given product
+     * Find if there is already a promotion for the given product with the same minimum amount
      *
      * @param productId The product identification
+     * @param minAmount The minimum amount of the tier
      * @return Returns the promotion or an empty {@link Optional}
      */
-    public Optional<Promotion> findByProduct(String productId) {
-        return find("productId", productId)
-                .singleResultOptional();
-    }
-
-    /**
-     * Find if there is a promotion for the given product and with the minumum amount
-     *
-     * @param productId The product identification
-     * @param amount The amount of puchased products
-     * @return Returns the promotion or an empty {@link Optional}
-     */
-    public Optional<Promotion> findByProductAmount(String productId, BigInteger amount) {
-        // Builds the parameters
+    public Optional<Promotion> findByProductMinAmount(String productId, BigInteger minAmount) {
         var parameters = Parameters.with("productId", productId)
-                .and("amount", amount);
+                .and("minAmount", minAmount);
 
-        // Executes the query
-        return find("productId = :productId and minAmount <= :amount", parameters)
-                .singleResultOptional();
+        return find("productId = :productId and minAmount = :minAmount", parameters)
+                .firstResultOptional();
     }
+
 }
@@ -1,9 +1,13 @@
 package br.zapparolli.resource;
 
+import br.zapparolli.model.BasketSummary;
 import br.zapparolli.model.InsertedBasket;
+import br.zapparolli.model.InsertedBasketBatch;
+import br.zapparolli.model.NewBasketBatch;
 import br.zapparolli.model.NewBasketItem;
 import br.zapparolli.service.BasketConverter;
 import br.zapparolli.service.BasketService;
+import io.smallrye.mutiny.Uni;
 
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -13,6 +17,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * The resource for the basket operations
@@ -37,12 +43,24 @@ public class BasketResource {
      * @return Returns the model with the updated data
      */
     @POST
-    public InsertedBasket addItem(NewBasketItem newBasketItem) {
-        // Adds the item
-        var basket = basketService.addItem(newBasketItem);
+    public Uni<InsertedBasket> addItem(NewBasketItem newBasketItem) {
+        // Adds the item and converts the entity
+        return basketService.addItemAsync(newBasketItem)
+                .map(basketConverter::convertBasket);
+    }
 
-        // Converts the entity
-        return basketConverter.convertBasket(basket);
+    /**
+     * Adds several items to the basket at once
+     *
+     * @param newBasketBatch The items to be added
+     * @return Returns the model with the updated basket and the rejected items
+     */
+    @POST
+    @Path("/batch")
+    public InsertedBasketBatch addItems(NewBasketBatch newBasketBatch) {
+        // Adds the items and converts the basket once
+        var batchResult = basketService.addItems(newBasketBatch);
+        return basketConverter.convertBasketBatch(batchResult);
     }
 
     /**
@@ -77,4 +95,18 @@ public class BasketResource {
         return basketConverter.convertBasket(basket);
     }
 
+    /**
+     * Lists the summary of all baskets of the given customer, without the items
+     *
+     * @param customerId The customer identification
+     * @return Returns the baskets found, the most recent first
+     */
+    @GET
+    @Path("/{customerId}/history")
+    public List<BasketSummary> getBasketHistory(@PathParam("customerId") String customerId) {
+        return basketService.getBasketHistory(customerId).stream()
+                .map(basketConverter::convertBasketSummary)
+                .collect(Collectors.toList());
+    }
+
 }
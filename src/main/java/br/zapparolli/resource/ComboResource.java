@@ -0,0 +1,78 @@
+package br.zapparolli.resource;
+
+import br.zapparolli.entity.Combo;
+import br.zapparolli.model.ComboProduct;
+import br.zapparolli.model.InsertedCombo;
+import br.zapparolli.model.NewCombo;
+import br.zapparolli.service.ComboService;
+
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The resource for the combo operations
+ *
+ * @author lczapparolli
+ */
+@Path("/combo")
+@Consumes(MediaType.APPLICATION_JSON)
+@Produces(MediaType.APPLICATION_JSON)
+public class ComboResource {
+
+    @Inject
+    ComboService comboService;
+
+    /**
+     * Creates a new combo
+     *
+     * @param newCombo The combo data
+     * @return Returns the created combo
+     */
+    @POST
+    public InsertedCombo createCombo(NewCombo newCombo) {
+        // Creates the combo and converts the entity to the return model
+        return convertCombo(comboService.createCombo(newCombo));
+    }
+
+    /**
+     * Lists all combos
+     *
+     * @return Returns the list of existent combos
+     */
+    @GET
+    public List<InsertedCombo> listCombos() {
+        return comboService.getAllCombos().stream()
+                .map(this::convertCombo)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Converts the entity to the model
+     *
+     * @param combo Entity to be converted
+     * @return Return the model with the same data
+     */
+    private InsertedCombo convertCombo(Combo combo) {
+        return InsertedCombo.builder()
+                .id(combo.getId())
+                .name(combo.getName())
+                .type(combo.getType())
+                .items(combo.getItems().stream()
+                        .map(item -> ComboProduct.builder()
+                                .productId(item.getProductId())
+                                .amount(item.getAmount())
+                                .build())
+                        .collect(Collectors.toList()))
+                .discount(combo.getDiscount())
+                .freeAmount(combo.getFreeAmount())
+                .build();
+    }
+
+}
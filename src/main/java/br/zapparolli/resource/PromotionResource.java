@@ -4,6 +4,7 @@ import br.zapparolli.entity.Promotion;
 import br.zapparolli.model.InsertedPromotion;
 import br.zapparolli.model.NewPromotion;
 import br.zapparolli.service.PromotionService;
+import io.smallrye.mutiny.Uni;
 
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -35,12 +36,10 @@ public class PromotionResource {
      * @return Returns the created promotion
      */
     @POST
-    public InsertedPromotion createPromotion(NewPromotion newPromotion) {
-        // Creates the promotion
-        var promotion = promotionService.createPromotion(newPromotion);
-
-        // Converts the entity to the return model
-        return convertPromotion(promotion);
+    public Uni<InsertedPromotion> createPromotion(NewPromotion newPromotion) {
+        // Creates the promotion and converts the entity to the return model
+        return promotionService.createPromotionAsync(newPromotion)
+                .map(this::convertPromotion);
     }
 
     /**
@@ -10,6 +10,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Rest client for products API
@@ -41,4 +42,15 @@ public interface ProductsRestClient {
     @Produces(MediaType.APPLICATION_JSON)
     Product getProduct(@PathParam("id") String id);
 
+    /**
+     * Return the data of a single product without blocking the caller thread
+     *
+     * @param id Product identification
+     * @return The stage completed with the product data
+     */
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    CompletionStage<Product> getProductAsync(@PathParam("id") String id);
+
 }
@@ -0,0 +1,29 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.model.RejectedItem;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The result of adding several items to a basket at once
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+public class BasketBatchResult {
+
+    /**
+     * The basket with the added items, empty if no item could be added
+     */
+    private Basket basket;
+
+    /**
+     * The items that could not be added
+     */
+    private List<RejectedItem> rejectedItems;
+
+}
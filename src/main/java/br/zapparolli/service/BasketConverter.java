@@ -1,15 +1,20 @@
 package br.zapparolli.service;
 
 import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketCombo;
 import br.zapparolli.entity.BasketItem;
-import br.zapparolli.entity.Promotion;
+import br.zapparolli.model.AppliedCombo;
+import br.zapparolli.model.BasketSummary;
 import br.zapparolli.model.InsertedBasket;
+import br.zapparolli.model.InsertedBasketBatch;
 import br.zapparolli.model.InsertedBasketItem;
+import br.zapparolli.model.Product;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import java.math.BigInteger;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -30,54 +35,111 @@ public class BasketConverter {
      * @return Returns the model with the same data
      */
     public InsertedBasket convertBasket(Basket basket) {
+        // Resolves at once the products whose name is not stored in the item
+        var productNames = findMissingProductNames(basket);
+
         // Creates the model for the basket
-        var insertedBasket = InsertedBasket.builder()
+        return InsertedBasket.builder()
+                .customerId(basket.getCustomerId())
+                .items(basket.getItems().stream()
+                        .map(item -> convertBasketItem(item, productNames))
+                        .collect(Collectors.toList()))
+                .combos(Objects.requireNonNullElse(basket.getCombos(), List.<BasketCombo>of()).stream()
+                        .map(this::convertBasketCombo)
+                        .collect(Collectors.toList()))
+                // The values are kept up to date by the pricing as the items change
+                .rawValue(basket.getRawValue().longValueExact())
+                .discount(basket.getDiscount().longValueExact())
+                .total(basket.getTotal().longValueExact())
+                .build();
+    }
+
+    /**
+     * Converts the result of a batch addition to the response model, rendering the basket once
+     *
+     * @param batchResult The result of the batch
+     * @return Returns the model with the basket and the rejected items
+     */
+    public InsertedBasketBatch convertBasketBatch(BasketBatchResult batchResult) {
+        return InsertedBasketBatch.builder()
+                .basket(Objects.isNull(batchResult.getBasket()) ? null : convertBasket(batchResult.getBasket()))
+                .rejectedItems(batchResult.getRejectedItems())
+                .build();
+    }
+
+    /**
+     * Converts the entity to the summary model, using only the values stored in the basket row
+     *
+     * @param basket The basket object
+     * @return Returns the summary of the basket
+     */
+    public BasketSummary convertBasketSummary(Basket basket) {
+        return BasketSummary.builder()
+                .id(basket.getId())
                 .customerId(basket.getCustomerId())
-                .items(basket.getItems().stream().map(this::convertBasketItem).collect(Collectors.toList()))
+                .open(basket.isOpen())
+                .rawValue(basket.getRawValue().longValueExact())
+                .discount(basket.getDiscount().longValueExact())
+                .total(basket.getTotal().longValueExact())
                 .build();
+    }
 
-        // Calculates the raw value of the basket
-        insertedBasket.setRawValue(insertedBasket.getItems().stream()
-                .map(InsertedBasketItem::getRawValue)
-                .reduce(BigInteger.ZERO, BigInteger::add));
+    /**
+     * Queries the products API for the names that are not stored in the basket items
+     *
+     * @param basket The basket object
+     * @return Returns the names found, indexed by the product identification
+     */
+    private Map<String, String> findMissingProductNames(Basket basket) {
+        var missingIds = basket.getItems().stream()
+                .filter(item -> Objects.isNull(item.getProductName()))
+                .map(BasketItem::getProductId)
+                .collect(Collectors.toSet());
 
-        // Calculates the discount value of the basket
-        insertedBasket.setDiscount(insertedBasket.getItems().stream()
-                .map(InsertedBasketItem::getDiscount)
-                .reduce(BigInteger.ZERO, BigInteger::add));
+        if (missingIds.isEmpty()) {
+            return Map.of();
+        }
 
-        // Calculates the total value of the basket
-        insertedBasket.setTotal(insertedBasket.getItems().stream()
-                .map(InsertedBasketItem::getItemTotal)
-                .reduce(BigInteger.ZERO, BigInteger::add));
+        return productService.findProducts(missingIds).values().stream()
+                .collect(Collectors.toMap(Product::getId, Product::getName));
+    }
 
-        return insertedBasket;
+    /**
+     * Converts a combo applied to the basket
+     *
+     * @param basketCombo The applied combo object
+     * @return Returns the model with the same data
+     */
+    private AppliedCombo convertBasketCombo(BasketCombo basketCombo) {
+        return AppliedCombo.builder()
+                .comboId(basketCombo.getCombo().getId())
+                .name(basketCombo.getCombo().getName())
+                .times(basketCombo.getTimes().longValueExact())
+                .discount(basketCombo.getDiscount().longValueExact())
+                .build();
     }
 
     /**
      * Converts the item of a basket
      *
      * @param basketItem The basket item object
+     * @param productNames The product names resolved from the API for items that don't store it
      * @return Returns the model with the same data
      */
-    private InsertedBasketItem convertBasketItem(BasketItem basketItem) {
-        // Get the product data
-        var product = productService.findProduct(basketItem.getProductId());
-        var rawValue = basketItem.getAmount().multiply(basketItem.getUnitPrice());
-        var discount = Optional.ofNullable(basketItem.getPromotion())
-                .map(Promotion::getUnitDiscount)
-                .orElse(BigInteger.ZERO)
-                .multiply(basketItem.getAmount());
+    private InsertedBasketItem convertBasketItem(BasketItem basketItem, Map<String, String> productNames) {
+        // The values of the line are calculated once, in cents
+        var rawValue = basketItem.getRawValueCents();
+        var discount = basketItem.getDiscountCents();
 
         // Converts the basket item
         return InsertedBasketItem.builder()
-                .productId(product.getId())
-                .productName(product.getName())
-                .amount(basketItem.getAmount())
-                .unitPrice(basketItem.getUnitPrice())
+                .productId(basketItem.getProductId())
+                .productName(Objects.requireNonNullElse(basketItem.getProductName(), productNames.get(basketItem.getProductId())))
+                .amount(basketItem.getAmount().longValueExact())
+                .unitPrice(basketItem.getUnitPrice().longValueExact())
                 .rawValue(rawValue)
                 .discount(discount)
-                .itemTotal(rawValue.subtract(discount))
+                .itemTotal(Math.subtractExact(rawValue, discount))
                 .build();
     }
 }
@@ -0,0 +1,131 @@
+package br.zapparolli.service;
+
+import br.zapparolli.model.Product;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigInteger;
+
+/**
+ * A change of an open basket, as written to the basket journal
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder(toBuilder = true)
+public class BasketEvent {
+
+    /**
+     * The kinds of change. New kinds go at the end, as the journal stores their position
+     */
+    public enum Type { ADD, CHECKOUT, CHECKOUT_ABORTED }
+
+    /**
+     * The kind of change
+     */
+    private Type type;
+
+    /**
+     * Position of the event in the journal, assigned when it's appended
+     */
+    private long sequence;
+
+    /**
+     * Time of the change, in milliseconds since the epoch
+     */
+    private long timestamp;
+
+    /**
+     * Customer identification
+     */
+    private String customerId;
+
+    /**
+     * Identification of the added product
+     */
+    private String productId;
+
+    /**
+     * Name of the added product
+     */
+    private String productName;
+
+    /**
+     * Price of the added product (in cents)
+     */
+    private BigInteger unitPrice;
+
+    /**
+     * Number of units added
+     */
+    private BigInteger amount;
+
+    /**
+     * Sequence of the checkout cancelled by a {@link Type#CHECKOUT_ABORTED} event
+     */
+    private long checkoutSequence;
+
+    /**
+     * Creates the event of units of a product added to the basket
+     *
+     * @param customerId The customer identification
+     * @param product The product data
+     * @param amount The number of units added
+     * @return Returns the created event
+     */
+    public static BasketEvent add(String customerId, Product product, BigInteger amount) {
+        return BasketEvent.builder()
+                .type(Type.ADD)
+                .timestamp(System.currentTimeMillis())
+                .customerId(customerId)
+                .productId(product.getId())
+                .productName(product.getName())
+                .unitPrice(product.getPrice())
+                .amount(amount)
+                .build();
+    }
+
+    /**
+     * Creates the event of the basket checked out
+     *
+     * @param customerId The customer identification
+     * @return Returns the created event
+     */
+    public static BasketEvent checkout(String customerId) {
+        return BasketEvent.builder()
+                .type(Type.CHECKOUT)
+                .timestamp(System.currentTimeMillis())
+                .customerId(customerId)
+                .build();
+    }
+
+    /**
+     * Creates the event of a checkout that could not be written to the database, so the basket is still open
+     *
+     * @param customerId The customer identification
+     * @param checkoutSequence The sequence of the cancelled checkout event
+     * @return Returns the created event
+     */
+    public static BasketEvent checkoutAborted(String customerId, long checkoutSequence) {
+        return BasketEvent.builder()
+                .type(Type.CHECKOUT_ABORTED)
+                .timestamp(System.currentTimeMillis())
+                .customerId(customerId)
+                .checkoutSequence(checkoutSequence)
+                .build();
+    }
+
+    /**
+     * Get the product data of an addition
+     *
+     * @return Returns the product
+     */
+    public Product getProduct() {
+        return Product.builder()
+                .id(productId)
+                .name(productName)
+                .price(unitPrice)
+                .build();
+    }
+
+}
@@ -0,0 +1,744 @@
+package br.zapparolli.service;
+
+import lombok.Builder;
+import lombok.Data;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of basket events, stored in a local directory.
+ * The events are written to segment files by a single writer thread: the events appended while a write is in
+ * progress are written together in the next one and share the same fsync, so concurrent appends don't wait for one
+ * disk sync each. Every record has a checksum, so an incomplete record left by a crash ends the reading of its segment.
+ * <p>
+ * A snapshot stores the state built from the events in a single file and moves the segments it covers to the
+ * {@code archive} subdirectory, so the number of events read at startup is bounded by the events appended after the last
+ * snapshot. The archived segments keep the history of the baskets for auditing, until they are older than the retention.
+ *
+ * @author lczapparolli
+ */
+public class BasketJournal implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(BasketJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String ARCHIVE_DIRECTORY = "archive";
+
+    /**
+     * Maximum size of a record, larger lengths are read as a corrupted record
+     */
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    /**
+     * Time the writer waits for new events before checking if the journal was closed, in milliseconds
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * The directory of the segments and the snapshot
+     */
+    private final Path directory;
+
+    /**
+     * The directory of the segments covered by a snapshot
+     */
+    private final Path archive;
+
+    /**
+     * Time the archived segments are kept after their last write
+     */
+    private final Duration archiveRetention;
+
+    /**
+     * The last sequence assigned or read
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Number of events written since the journal was started
+     */
+    private final AtomicLong appendedEvents = new AtomicLong();
+
+    /**
+     * Number of disk syncs since the journal was started
+     */
+    private final AtomicLong syncs = new AtomicLong();
+
+    /**
+     * Number of events written since the last snapshot
+     */
+    private final AtomicLong eventsSinceSnapshot = new AtomicLong();
+
+    /**
+     * The events waiting to be written
+     */
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Guards the segment being written
+     */
+    private final Object segmentLock = new Object();
+
+    private FileChannel channel;
+    private long segmentNumber;
+    private Thread writer;
+    private boolean closed;
+
+    /**
+     * Creates a journal stored in the given directory, creating it if not exists
+     *
+     * @param directory The directory of the journal
+     * @param archiveRetention Time the segments covered by a snapshot are kept
+     */
+    public BasketJournal(Path directory, Duration archiveRetention) {
+        this.directory = directory;
+        this.archive = directory.resolve(ARCHIVE_DIRECTORY);
+        this.archiveRetention = archiveRetention;
+        try {
+            Files.createDirectories(archive);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not create the basket journal directory " + directory, exception);
+        }
+    }
+
+    /**
+     * Reads the last snapshot written
+     *
+     * @return Returns the snapshot or an empty {@link Optional} if there is none
+     */
+    public Optional<Snapshot> readSnapshot() {
+        var file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            var snapshotSequence = input.readLong();
+            var state = new byte[input.readInt()];
+            input.readFully(state);
+
+            sequence.accumulateAndGet(snapshotSequence, Math::max);
+            return Optional.of(Snapshot.builder()
+                    .sequence(snapshotSequence)
+                    .state(state)
+                    .build());
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not read the basket journal snapshot", exception);
+        }
+    }
+
+    /**
+     * Reads the events of all segments, in the order they were written
+     *
+     * @return Returns the events
+     */
+    public List<BasketEvent> readEvents() {
+        var events = new ArrayList<BasketEvent>();
+        for (var segment : listSegments(directory)) {
+            readSegment(segment, events);
+        }
+        events.forEach(event -> sequence.accumulateAndGet(event.getSequence(), Math::max));
+
+        return events;
+    }
+
+    /**
+     * Reads the events of the archived segments still within the retention, in the order they were written
+     *
+     * @return Returns the events
+     */
+    public List<BasketEvent> readArchivedEvents() {
+        var events = new ArrayList<BasketEvent>();
+        for (var segment : listSegments(archive)) {
+            readSegment(segment, events);
+        }
+
+        return events;
+    }
+
+    /**
+     * Opens a new segment and starts writing the appended events.
+     * The sequences continue from the last one read, so the snapshot and the events must be read before
+     */
+    public void start() {
+        synchronized (segmentLock) {
+            segmentNumber = listSegments(directory).stream()
+                    .mapToLong(BasketJournal::getSegmentNumber)
+                    .max()
+                    .orElse(0);
+            openSegment();
+        }
+
+        writer = new Thread(this::writeLoop, "basket-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends an event, waiting until it's written to the disk
+     *
+     * @param event The event to be appended
+     * @throws UncheckedIOException Throws an exception if the event could not be written
+     * @return Returns the event with its sequence
+     */
+    public BasketEvent append(BasketEvent event) {
+        return appendAll(List.of(event)).get(0);
+    }
+
+    /**
+     * Appends several events in the same write, waiting until they are written to the disk
+     *
+     * @param events The events to be appended, in order
+     * @throws UncheckedIOException Throws an exception if the events could not be written
+     * @return Returns the events with their sequences
+     */
+    public List<BasketEvent> appendAll(List<BasketEvent> events) {
+        return await(appendAllAsync(events));
+    }
+
+    /**
+     * Queues several events to be written together, without waiting for the disk. The sequences are assigned in the
+     * order of the calls, so the caller can release its locks and wait for the write with {@link #await(CompletableFuture)}
+     *
+     * @param events The events to be appended, in order
+     * @throws IllegalStateException Throws an exception if the journal is closed
+     * @return Returns the write of the events, completed with the events and their sequences once they are on disk
+     */
+    public CompletableFuture<List<BasketEvent>> appendAllAsync(List<BasketEvent> events) {
+        var sequencedEvents = new ArrayList<BasketEvent>();
+        var pendingAppends = new ArrayList<PendingAppend>();
+        synchronized (queue) {
+            if (closed) {
+                throw new IllegalStateException("The basket journal is closed");
+            }
+            // The events are queued one after the other, so they are usually written by the same disk sync
+            for (var event : events) {
+                var sequencedEvent = event.toBuilder()
+                        .sequence(sequence.incrementAndGet())
+                        .build();
+                var pending = new PendingAppend(encode(sequencedEvent));
+                sequencedEvents.add(sequencedEvent);
+                pendingAppends.add(pending);
+                queue.add(pending);
+            }
+        }
+
+        return CompletableFuture.allOf(pendingAppends.stream().map(pending -> pending.written).toArray(CompletableFuture[]::new))
+                .thenApply(written -> {
+                    appendedEvents.addAndGet(events.size());
+                    eventsSinceSnapshot.addAndGet(events.size());
+                    return sequencedEvents;
+                });
+    }
+
+    /**
+     * Waits until queued events are written to the disk
+     *
+     * @param written The write returned by {@link #appendAllAsync(List)}
+     * @throws UncheckedIOException Throws an exception if the events could not be written
+     * @return Returns the events with their sequences
+     */
+    public static List<BasketEvent> await(CompletableFuture<List<BasketEvent>> written) {
+        try {
+            return written.join();
+        } catch (CompletionException exception) {
+            throw new UncheckedIOException("Could not write to the basket journal", (IOException) exception.getCause());
+        }
+    }
+
+    /**
+     * Writes a snapshot and archives the segments covered by it, removing the archived ones older than the retention.
+     * A new segment is opened before the state is captured, so every event of the older segments was already applied
+     * to the captured state, as long as the state waits for the events queued by {@link #appendAllAsync(List)} to be
+     * applied. Events of the new segment may also be in the state, so the state must tell which events it already
+     * contains. Concurrent snapshots are written one at a time, as they share the temporary file
+     *
+     * @param state Captures the state built from the events
+     */
+    public synchronized void snapshot(Supplier<byte[]> state) {
+        long firstKeptSegment;
+        synchronized (segmentLock) {
+            rotate();
+            firstKeptSegment = segmentNumber;
+        }
+        eventsSinceSnapshot.set(0);
+
+        var content = state.get();
+        var snapshotSequence = sequence.get();
+        var file = directory.resolve(SNAPSHOT_FILE);
+        var temporaryFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            var buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + content.length)
+                    .putLong(snapshotSequence)
+                    .putInt(content.length)
+                    .put(content)
+                    .flip();
+            try (var snapshotChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(snapshotChannel, buffer);
+                snapshotChannel.force(true);
+            }
+            // The previous snapshot is replaced only by a complete one
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            for (var segment : listSegments(directory)) {
+                if (getSegmentNumber(segment) < firstKeptSegment) {
+                    Files.move(segment, archive.resolve(segment.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            // The retention counts from the last write of the segment
+            var oldestKept = FileTime.from(Instant.now().minus(archiveRetention));
+            for (var segment : listSegments(archive)) {
+                if (Files.getLastModifiedTime(segment).compareTo(oldestKept) < 0) {
+                    Files.delete(segment);
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not write the basket journal snapshot", exception);
+        }
+    }
+
+    /**
+     * Stops the writer after the pending events are written and closes the current segment
+     */
+    @Override
+    public void close() {
+        synchronized (queue) {
+            closed = true;
+        }
+
+        if (Objects.nonNull(writer)) {
+            try {
+                writer.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (segmentLock) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * Get the number of events written since the journal was started
+     *
+     * @return Returns the number of events
+     */
+    public long getAppendedEvents() {
+        return appendedEvents.get();
+    }
+
+    /**
+     * Get the number of disk syncs since the journal was started
+     *
+     * @return Returns the number of syncs
+     */
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    /**
+     * Get the number of events written since the last snapshot
+     *
+     * @return Returns the number of events
+     */
+    public long getEventsSinceSnapshot() {
+        return eventsSinceSnapshot.get();
+    }
+
+    /**
+     * Writes the pending events in batches, with a single disk sync per batch
+     */
+    private void writeLoop() {
+        var batch = new ArrayList<PendingAppend>();
+        while (true) {
+            PendingAppend first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (Objects.isNull(first)) {
+                // The events appended before the journal was closed are all written
+                if (isClosed() && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            // Every event that arrived during the previous write goes in this one
+            batch.clear();
+            batch.add(first);
+            queue.drainTo(batch);
+            writeBatch(batch);
+        }
+    }
+
+    /**
+     * Writes a batch of events and syncs the segment, notifying the callers
+     *
+     * @param batch The events to be written
+     */
+    private void writeBatch(List<PendingAppend> batch) {
+        IOException failure = null;
+        synchronized (segmentLock) {
+            var batchStart = -1L;
+            try {
+                batchStart = channel.position();
+                for (var pending : batch) {
+                    writeFully(channel, pending.record);
+                }
+                sync(channel);
+            } catch (IOException exception) {
+                failure = exception;
+                // The records may reach the disk even if the sync failed, and the replay must not apply them
+                truncate(batchStart);
+                // A partial record ends the reading of the segment, so the next events go to a new one
+                rotate();
+            }
+        }
+
+        if (Objects.isNull(failure)) {
+            syncs.incrementAndGet();
+            batch.forEach(pending -> pending.written.complete(null));
+        } else {
+            LOG.errorf(failure, "Could not write %d basket events", batch.size());
+            var exception = failure;
+            batch.forEach(pending -> pending.written.completeExceptionally(exception));
+        }
+    }
+
+    /**
+     * Syncs the written records of a segment to the disk
+     *
+     * @param segmentChannel The channel of the segment
+     * @throws IOException Throws an exception if the records could not be synced
+     */
+    void sync(FileChannel segmentChannel) throws IOException {
+        segmentChannel.force(false);
+    }
+
+    /**
+     * Removes the records of a failed write from the current segment. The segment lock must be held by the caller
+     *
+     * @param position The size of the segment before the write, negative if unknown
+     */
+    private void truncate(long position) {
+        if (position < 0) {
+            return;
+        }
+
+        try {
+            channel.truncate(position);
+            channel.force(false);
+        } catch (IOException exception) {
+            LOG.errorf(exception, "Could not remove the basket events of a failed write, they may be applied by the replay");
+        }
+    }
+
+    /**
+     * Checks if the journal was closed
+     *
+     * @return Returns true if it was closed
+     */
+    private boolean isClosed() {
+        synchronized (queue) {
+            return closed;
+        }
+    }
+
+    /**
+     * Closes the current segment and opens the next one. The segment lock must be held by the caller
+     */
+    private void rotate() {
+        closeSegment();
+        openSegment();
+    }
+
+    /**
+     * Opens the next segment. The segment lock must be held by the caller
+     */
+    private void openSegment() {
+        segmentNumber++;
+        var segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+        try {
+            channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not open the basket journal segment " + segment, exception);
+        }
+    }
+
+    /**
+     * Closes the current segment, if any. The segment lock must be held by the caller
+     */
+    private void closeSegment() {
+        if (Objects.isNull(channel)) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            LOG.warnf(exception, "Could not close the basket journal segment");
+        }
+        channel = null;
+    }
+
+    /**
+     * Lists the segments of a directory of the journal, the oldest first
+     *
+     * @param segmentDirectory The journal directory or the archive
+     * @return Returns the paths of the segments
+     */
+    private static List<Path> listSegments(Path segmentDirectory) {
+        try (var files = Files.list(segmentDirectory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not list the basket journal segments", exception);
+        }
+    }
+
+    /**
+     * Reads the events of a segment, stopping at the first incomplete or corrupted record
+     *
+     * @param segment The segment to be read
+     * @param events The list that receives the events
+     */
+    private void readSegment(Path segment, List<BasketEvent> events) {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (input.available() > 0) {
+                var length = input.readInt();
+                var checksum = input.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    LOG.warnf("Invalid record found in %s, the rest of the segment is ignored", segment);
+                    return;
+                }
+
+                var payload = new byte[length];
+                input.readFully(payload);
+                if (checksum(payload) != checksum) {
+                    LOG.warnf("Corrupted record found in %s, the rest of the segment is ignored", segment);
+                    return;
+                }
+                events.add(decode(payload));
+            }
+        } catch (EOFException exception) {
+            LOG.warnf("Incomplete record found at the end of %s, it is ignored", segment);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not read the basket journal segment " + segment, exception);
+        }
+    }
+
+    /**
+     * Get the number of a segment from its file name
+     *
+     * @param segment The path of the segment
+     * @return Returns the segment number
+     */
+    private static long getSegmentNumber(Path segment) {
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Encodes an event as a record: the length and the checksum of the payload, followed by the payload
+     *
+     * @param event The event to be encoded
+     * @return Returns the record ready to be written
+     */
+    private static ByteBuffer encode(BasketEvent event) {
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new DataOutputStream(bytes)) {
+            output.writeByte(event.getType().ordinal());
+            output.writeLong(event.getSequence());
+            output.writeLong(event.getTimestamp());
+            output.writeUTF(event.getCustomerId());
+            if (event.getType() == BasketEvent.Type.ADD) {
+                output.writeUTF(event.getProductId());
+                output.writeBoolean(Objects.nonNull(event.getProductName()));
+                if (Objects.nonNull(event.getProductName())) {
+                    output.writeUTF(event.getProductName());
+                }
+                writeBigInteger(output, event.getUnitPrice());
+                writeBigInteger(output, event.getAmount());
+            } else if (event.getType() == BasketEvent.Type.CHECKOUT_ABORTED) {
+                output.writeLong(event.getCheckoutSequence());
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        var payload = bytes.toByteArray();
+        return ByteBuffer.allocate(Integer.BYTES * 2 + payload.length)
+                .putInt(payload.length)
+                .putInt(checksum(payload))
+                .put(payload)
+                .flip();
+    }
+
+    /**
+     * Decodes the payload of a record
+     *
+     * @param payload The payload to be decoded
+     * @return Returns the event
+     * @throws IOException Throws an exception if the payload is incomplete
+     */
+    private static BasketEvent decode(byte[] payload) throws IOException {
+        try (var input = new DataInputStream(new ByteArrayInputStream(payload))) {
+            var type = BasketEvent.Type.values()[input.readByte()];
+            var event = BasketEvent.builder()
+                    .type(type)
+                    .sequence(input.readLong())
+                    .timestamp(input.readLong())
+                    .customerId(input.readUTF());
+            if (type == BasketEvent.Type.ADD) {
+                event.productId(input.readUTF())
+                        .productName(input.readBoolean() ? input.readUTF() : null)
+                        .unitPrice(readBigInteger(input))
+                        .amount(readBigInteger(input));
+            } else if (type == BasketEvent.Type.CHECKOUT_ABORTED) {
+                event.checkoutSequence(input.readLong());
+            }
+
+            return event.build();
+        }
+    }
+
+    /**
+     * Writes a number as its length followed by its bytes
+     *
+     * @param output The output of the payload
+     * @param value The number to be written
+     * @throws IOException Throws an exception if the number could not be written
+     */
+    private static void writeBigInteger(DataOutputStream output, BigInteger value) throws IOException {
+        var bytes = value.toByteArray();
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a number written by {@link #writeBigInteger(DataOutputStream, BigInteger)}
+     *
+     * @param input The input of the payload
+     * @return Returns the number
+     * @throws IOException Throws an exception if the payload is incomplete
+     */
+    private static BigInteger readBigInteger(DataInputStream input) throws IOException {
+        var bytes = new byte[input.readUnsignedShort()];
+        input.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * Calculates the checksum of a payload
+     *
+     * @param payload The payload
+     * @return Returns the CRC32 of the payload
+     */
+    private static int checksum(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes the whole buffer to the channel
+     *
+     * @param channel The channel to be written
+     * @param buffer The content to be written
+     * @throws IOException Throws an exception if the content could not be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * An event waiting to be written
+     */
+    private static class PendingAppend {
+
+        /**
+         * The encoded record
+         */
+        private final ByteBuffer record;
+
+        /**
+         * Completed when the record is synced to the disk
+         */
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        /**
+         * Creates a pending append of the record
+         *
+         * @param record The encoded record
+         */
+        private PendingAppend(ByteBuffer record) {
+            this.record = record;
+        }
+
+    }
+
+    /**
+     * The content of a snapshot
+     */
+    @Data
+    @Builder
+    public static class Snapshot {
+
+        /**
+         * The last sequence assigned when the snapshot was written
+         */
+        private long sequence;
+
+        /**
+         * The captured state
+         */
+        private byte[] state;
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketItem;
+import br.zapparolli.exception.ErrorMessage;
+import br.zapparolli.exception.QikServeException;
+import br.zapparolli.model.Product;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the running values of a basket, re-pricing only the line that changed
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class BasketPricing {
+
+    @Inject
+    PromotionService promotionService;
+
+    @Inject
+    ComboEngine comboEngine;
+
+    /**
+     * Adds units of a product to the basket, creating its item if not exists
+     *
+     * @param basket The basket to be changed
+     * @param product The product data
+     * @param amount The units to be added
+     */
+    public void addProduct(Basket basket, Product product, BigInteger amount) {
+        // Checks if the basket already have the product, otherwise creates a new item
+        var basketItem = basket.findItem(product.getId())
+                .orElseGet(() -> BasketItem.newBasketItem(basket, product));
+
+        // Increments the amount of the item, re-pricing only this line
+        addAmount(basket, basketItem, amount);
+    }
+
+    /**
+     * Checks, before changing the basket, if the values of the lines and of the basket still fit in cents after the
+     * additions
+     *
+     * @param basket The basket to be changed
+     * @param additions The units to be added of each product
+     * @throws QikServeException Throws an exception if any value is too large
+     */
+    public void validateAdditions(Basket basket, Map<Product, BigInteger> additions) {
+        ensurePriced(basket);
+        try {
+            var rawValue = basket.getRawValue().longValueExact();
+            for (var addition : additions.entrySet()) {
+                var basketItem = basket.findItem(addition.getKey().getId());
+                var unitPrice = basketItem.map(BasketItem::getUnitPrice).orElse(addition.getKey().getPrice()).longValueExact();
+                var amount = basketItem.map(BasketItem::getAmount).orElse(BigInteger.ZERO).add(addition.getValue());
+
+                // Both the line and the basket must fit
+                Math.multiplyExact(amount.longValueExact(), unitPrice);
+                rawValue = Math.addExact(rawValue, Math.multiplyExact(addition.getValue().longValueExact(), unitPrice));
+            }
+        } catch (ArithmeticException exception) {
+            throw new QikServeException(ErrorMessage.ERROR_INVALID_AMOUNT);
+        }
+    }
+
+    /**
+     * Adds units to a basket item, updating its promotion, the combos of its product and the basket values
+     *
+     * @param basket The basket of the item
+     * @param basketItem The item to be changed
+     * @param amount The units to be added
+     */
+    public void addAmount(Basket basket, BasketItem basketItem, BigInteger amount) {
+        ensurePriced(basket);
+
+        // Keeps the values of the line before the change
+        var previousRawValue = basketItem.getRawValueCents();
+        var previousDiscount = basketItem.getDiscountCents();
+
+        // The promotion is checked on every change of amount, so a higher tier replaces the current one
+        basketItem.setAmount(basketItem.getAmount().add(amount));
+        basketItem.setPromotion(promotionService.getPromotion(basketItem.getProductId(), basketItem.getAmount()).orElse(null));
+
+        // Only the combos that involve the changed product are evaluated
+        var comboDiscount = comboEngine.apply(basket, basketItem.getProductId());
+
+        updateTotals(basket, Math.subtractExact(basketItem.getRawValueCents(), previousRawValue),
+                Math.addExact(Math.subtractExact(basketItem.getDiscountCents(), previousDiscount), comboDiscount));
+    }
+
+    /**
+     * Calculates the values of a basket stored before they were kept in the basket row
+     *
+     * @param basket The basket to be priced
+     */
+    public void ensurePriced(Basket basket) {
+        if (Objects.isNull(basket.getRawValue())) {
+            price(basket);
+        }
+    }
+
+    /**
+     * Evaluates again the promotions and the combos of all items, then calculates the values of the basket
+     *
+     * @param basket The basket to be priced
+     */
+    public void reprice(Basket basket) {
+        basket.getCombos().clear();
+        for (var basketItem : basket.getItems()) {
+            basketItem.setPromotion(promotionService.getPromotion(basketItem.getProductId(), basketItem.getAmount()).orElse(null));
+        }
+        for (var basketItem : basket.getItems()) {
+            comboEngine.apply(basket, basketItem.getProductId());
+        }
+
+        price(basket);
+    }
+
+    /**
+     * Calculates all values of a basket from its items and combos
+     *
+     * @param basket The basket to be priced
+     */
+    public void price(Basket basket) {
+        var rawValue = 0L;
+        var discount = 0L;
+        for (var basketItem : basket.getItems()) {
+            rawValue = Math.addExact(rawValue, basketItem.getRawValueCents());
+            discount = Math.addExact(discount, basketItem.getDiscountCents());
+        }
+        for (var basketCombo : basket.getCombos()) {
+            discount = Math.addExact(discount, basketCombo.getDiscount().longValueExact());
+        }
+
+        setValues(basket, rawValue, discount);
+    }
+
+    /**
+     * Applies the change of a line to the values of the basket
+     *
+     * @param basket The basket to be updated
+     * @param rawValueDelta The change in the raw value, in cents
+     * @param discountDelta The change in the discount, in cents
+     */
+    private void updateTotals(Basket basket, long rawValueDelta, long discountDelta) {
+        setValues(basket, Math.addExact(basket.getRawValue().longValueExact(), rawValueDelta),
+                Math.addExact(basket.getDiscount().longValueExact(), discountDelta));
+    }
+
+    /**
+     * Stores the values of the basket, calculating the total
+     *
+     * @param basket The basket to be updated
+     * @param rawValue The raw value, in cents
+     * @param discount The discount, in cents
+     */
+    private void setValues(Basket basket, long rawValue, long discount) {
+        basket.setRawValue(BigInteger.valueOf(rawValue));
+        basket.setDiscount(BigInteger.valueOf(discount));
+        basket.setTotal(BigInteger.valueOf(Math.subtractExact(rawValue, discount)));
+    }
+
+}
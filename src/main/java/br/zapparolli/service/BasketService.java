@@ -4,14 +4,35 @@ import br.zapparolli.entity.Basket;
 import br.zapparolli.entity.BasketItem;
 import br.zapparolli.exception.ErrorMessage;
 import br.zapparolli.exception.QikServeException;
+import br.zapparolli.model.NewBasketBatch;
+import br.zapparolli.model.NewBasketBatchItem;
 import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.model.Product;
+import br.zapparolli.model.RejectedItem;
 import br.zapparolli.repository.BasketRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.exception.ConstraintViolationException;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 import javax.transaction.Transactional;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 /**
  * Service for basket management
@@ -28,7 +49,48 @@ public class BasketService {
     ProductService productService;
 
     @Inject
-    PromotionService promotionService;
+    BasketPricing basketPricing;
+
+    @Inject
+    OpenBasketStore openBasketStore;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    /**
+     * Indicates if the product data is queried without blocking a worker thread
+     */
+    @ConfigProperty(name = "qikserve.products.reactive", defaultValue = "false")
+    boolean reactive;
+
+    /**
+     * Number of times an addition is attempted when the basket is changed by concurrent requests
+     */
+    @ConfigProperty(name = "qikserve.basket.max-attempts", defaultValue = "3")
+    int maxAttempts;
+
+    /**
+     * Counts the additions attempted again after a conflict
+     */
+    Counter retriedAdds;
+
+    /**
+     * Counts the additions that kept conflicting until the attempts were exhausted
+     */
+    Counter failedAdds;
+
+    /**
+     * Registers the conflict metrics
+     */
+    @PostConstruct
+    void initMetrics() {
+        retriedAdds = Counter.builder("basket.add.retries")
+                .description("Basket additions attempted again after a concurrent change")
+                .register(meterRegistry);
+        failedAdds = Counter.builder("basket.add.exhausted")
+                .description("Basket additions rejected after conflicting in every attempt")
+                .register(meterRegistry);
+    }
 
     /**
      * Add a new item to a basket, creating it if not exists
@@ -37,46 +99,197 @@ public class BasketService {
      * @throws QikServeException Throw an exception if an error occurs
      * @return Return the basket with the new item
      */
-    @Transactional
     public Basket addItem(NewBasketItem newBasketItem) {
         validateNewItem(newBasketItem);
         var product = productService.findProduct(newBasketItem.getProductId());
 
-        // Checks if the customer have an open basket or creates a new one
-        var basket = basketRepository.findOpenBasket(newBasketItem.getCustomerId())
-                .orElseGet(() -> Basket.newBasket(newBasketItem.getCustomerId()));
+        return addProductWithRetry(newBasketItem, product);
+    }
 
-        // Checks if the basket already have the product, otherwise creates a new item
-        var existentItem = basket.getItems()
-                .stream()
-                .filter(item -> item.getProductId().equals(newBasketItem.getProductId()))
-                .findFirst()
-                .orElseGet(() -> BasketItem.newBasketItem(basket, product));
+    /**
+     * Add several items to the basket of a customer at once, creating it if not exists.
+     * The products are resolved concurrently and all items are added in the same change of the basket. If the batch
+     * is partial, the invalid items are rejected and the others are still added, otherwise the first invalid item
+     * fails the whole batch
+     *
+     * @param newBasketBatch The items data
+     * @throws QikServeException Throw an exception if the batch is invalid or, if not partial, any of its items
+     * @return Return the basket with the new items and the rejected ones
+     */
+    public BasketBatchResult addItems(NewBasketBatch newBasketBatch) {
+        validateCustomerId(newBasketBatch.getCustomerId());
+        if (Objects.isNull(newBasketBatch.getItems()) || newBasketBatch.getItems().isEmpty()) {
+            throw new QikServeException(ErrorMessage.ERROR_BATCH_EMPTY);
+        }
 
-        // Increments the amount of the item
-        existentItem.setAmount(existentItem.getAmount().add(newBasketItem.getAmount()));
-        checkPromotion(existentItem);
+        var items = newBasketBatch.getItems();
+        var rejectedItems = new ArrayList<RejectedItem>();
+        BiConsumer<Integer, QikServeException> reject = (index, exception) -> {
+            if (!newBasketBatch.isPartial()) {
+                throw exception;
+            }
+            rejectedItems.add(RejectedItem.builder()
+                    .index(index)
+                    .productId(items.get(index).getProductId())
+                    .message(exception.getMessage())
+                    .build());
+        };
 
-        // Saves the basket and the itens
-        basketRepository.persist(basket);
+        // Validates every item before querying any product
+        var validIndexes = new ArrayList<Integer>();
+        for (var index = 0; index < items.size(); index++) {
+            try {
+                validateBatchItem(items.get(index));
+                validIndexes.add(index);
+            } catch (QikServeException exception) {
+                reject.accept(index, exception);
+            }
+        }
 
-        return basket;
+        // Resolves all products concurrently, the items of the products not found are rejected
+        var productErrors = new HashMap<String, QikServeException>();
+        var products = productService.findProducts(validIndexes.stream()
+                .map(index -> items.get(index).getProductId())
+                .collect(Collectors.toSet()), productErrors::put);
+
+        // The items of the same product are added together
+        var additions = new LinkedHashMap<Product, BigInteger>();
+        for (var index : validIndexes) {
+            var item = items.get(index);
+            if (productErrors.containsKey(item.getProductId())) {
+                reject.accept(index, productErrors.get(item.getProductId()));
+            } else {
+                additions.merge(products.get(item.getProductId()), item.getAmount(), BigInteger::add);
+            }
+        }
+
+        rejectedItems.sort(Comparator.comparing(RejectedItem::getIndex));
+        return BasketBatchResult.builder()
+                .basket(additions.isEmpty() ? null : addProductsWithRetry(newBasketBatch.getCustomerId(), additions))
+                .rejectedItems(rejectedItems)
+                .build();
     }
 
     /**
-     * Check if there is any promotion avaliable for the given item
+     * Add a new item to a basket without holding a worker thread while the product is queried.
+     * If the reactive mode is disabled, the blocking flow is executed in a worker thread.
      *
-     * @param basketItem The item of the basket to be analysed
+     * @param newBasketItem New item data
+     * @throws QikServeException Throw an exception if the item data is invalid
+     * @return Return the basket with the new item
      */
-    private void checkPromotion(BasketItem basketItem) {
-        // Returns if there is already a promotion
-        if (!Objects.isNull(basketItem.getPromotion())) {
-            return;
+    public Uni<Basket> addItemAsync(NewBasketItem newBasketItem) {
+        if (!reactive) {
+            return Uni.createFrom().item(() -> addItem(newBasketItem))
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        }
+
+        validateNewItem(newBasketItem);
+        return productService.findProductAsync(newBasketItem.getProductId())
+                // The database operations are still blocking
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .map(product -> addProductWithRetry(newBasketItem, product));
+    }
+
+    /**
+     * Add the product to the basket, trying again if another request has changed the basket or opened one for the
+     * same customer at the same time
+     *
+     * @param newBasketItem New item data
+     * @param product The product data
+     * @throws QikServeException Throws an exception if the basket keeps being changed in all attempts
+     * @return Return the basket with the new item
+     */
+    Basket addProductWithRetry(NewBasketItem newBasketItem, Product product) {
+        return addProductsWithRetry(newBasketItem.getCustomerId(), Map.of(product, newBasketItem.getAmount()));
+    }
+
+    /**
+     * Add the products to the basket, trying again if another request has changed the basket or opened one for the
+     * same customer at the same time
+     *
+     * @param customerId The customer identification
+     * @param additions The units to be added of each product
+     * @throws QikServeException Throws an exception if the basket keeps being changed in all attempts
+     * @return Return the basket with the new items
+     */
+    Basket addProductsWithRetry(String customerId, Map<Product, BigInteger> additions) {
+        if (openBasketStore.isEnabled()) {
+            // The changes of the basket are serialized by the store, so there is no conflict to retry
+            return openBasketStore.addProducts(customerId, additions);
         }
 
-        // Finds the promotion and sets in the item
-        var promotion = promotionService.getPromotion(basketItem.getProductId(), basketItem.getAmount());
-        promotion.ifPresent(basketItem::setPromotion);
+        for (var attempt = 1; ; attempt++) {
+            try {
+                return addProducts(customerId, additions);
+            } catch (PersistenceException exception) {
+                var reason = getConflictReason(exception);
+                if (Objects.isNull(reason)) {
+                    throw exception;
+                }
+                meterRegistry.counter("basket.add.conflicts", "reason", reason).increment();
+
+                if (attempt >= maxAttempts) {
+                    failedAdds.increment();
+                    throw new QikServeException(ErrorMessage.ERROR_BASKET_CONFLICT);
+                }
+
+                // The other change is committed, so the next attempt reads it
+                retriedAdds.increment();
+            }
+        }
+    }
+
+    /**
+     * Identifies if the error was caused by a concurrent change of the basket
+     *
+     * @param exception The error thrown while saving the basket
+     * @return Returns the reason of the conflict or null if the error is not a conflict
+     */
+    String getConflictReason(PersistenceException exception) {
+        if (exception instanceof OptimisticLockException) {
+            return "version";
+        }
+        // Only the basket opened by another request is a conflict, other violations are errors of the data
+        if (exception.getCause() instanceof ConstraintViolationException && isOpenBasketViolation((ConstraintViolationException) exception.getCause())) {
+            return "open-basket";
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks if the violated constraint is the one that allows a single open basket per customer
+     *
+     * @param exception The constraint violation
+     * @return Returns true if another open basket exists for the customer
+     */
+    private boolean isOpenBasketViolation(ConstraintViolationException exception) {
+        // Some databases report the name of the index created for the constraint, which starts with its name
+        return Objects.nonNull(exception.getConstraintName())
+                && exception.getConstraintName().toUpperCase().contains(Basket.OPEN_CUSTOMER_CONSTRAINT);
+    }
+
+    /**
+     * Add the products to the basket, creating it if not exists
+     *
+     * @param customerId The customer identification
+     * @param additions The units to be added of each product
+     * @return Return the basket with the new items
+     */
+    @Transactional
+    Basket addProducts(String customerId, Map<Product, BigInteger> additions) {
+        // Checks if the customer have an open basket or creates a new one
+        var basket = basketRepository.findOpenBasket(customerId)
+                .orElseGet(() -> Basket.newBasket(customerId));
+        backfillProductNames(basket);
+        basketPricing.validateAdditions(basket, additions);
+        additions.forEach((product, amount) -> basketPricing.addProduct(basket, product, amount));
+
+        // Saves the basket and the itens at once, so a concurrent change is detected here and can be retried
+        basketRepository.persistAndFlush(basket);
+
+        return basket;
     }
 
     /**
@@ -86,9 +299,64 @@ public class BasketService {
      * @throws QikServeException Throws an exception if there is no open basket
      * @return Returns the found basket
      */
+    @Transactional
     public Basket getOpenBasket(String customerId) {
-        return basketRepository.findOpenBasket(customerId)
+        if (openBasketStore.isEnabled()) {
+            return openBasketStore.find(customerId)
+                    .orElseThrow(() -> new QikServeException(ErrorMessage.ERROR_NO_OPEN_BASKET));
+        }
+
+        var basket = basketRepository.findOpenBasket(customerId)
                 .orElseThrow(() -> new QikServeException(ErrorMessage.ERROR_NO_OPEN_BASKET));
+        backfillProductNames(basket);
+        basketPricing.ensurePriced(basket);
+
+        return basket;
+    }
+
+    /**
+     * Get all baskets of the given customer, reading the values stored in the basket rows
+     *
+     * @param customerId The customer identification
+     * @return Returns the baskets, the most recent first
+     */
+    @Transactional
+    public List<Basket> getBasketHistory(String customerId) {
+        var baskets = basketRepository.findByCustomer(customerId);
+        // Only the baskets stored before the values were kept need their items
+        baskets.forEach(basketPricing::ensurePriced);
+
+        if (openBasketStore.isEnabled()) {
+            // The open basket in memory may have changes not written yet
+            openBasketStore.find(customerId).ifPresent(openBasket -> {
+                baskets.removeIf(Basket::isOpen);
+                baskets.add(0, openBasket);
+            });
+        }
+
+        return baskets;
+    }
+
+    /**
+     * Fills the product name of items created before it was stored in the basket
+     *
+     * @param basket The basket to be checked
+     */
+    private void backfillProductNames(Basket basket) {
+        var missingItems = basket.getItems()
+                .stream()
+                .filter(item -> Objects.isNull(item.getProductName()))
+                .collect(Collectors.toList());
+
+        if (missingItems.isEmpty()) {
+            return;
+        }
+
+        // Resolves all missing products concurrently
+        var products = productService.findProducts(missingItems.stream()
+                .map(BasketItem::getProductId)
+                .collect(Collectors.toSet()));
+        missingItems.forEach(item -> item.setProductName(products.get(item.getProductId()).getName()));
     }
 
     /**
@@ -98,13 +366,44 @@ public class BasketService {
      * @throws QikServeException Throws an exception if any field is invalid
      */
     private void validateNewItem(NewBasketItem newBasketItem) {
-        // Validates the customer identification
-        if (Objects.isNull(newBasketItem.getCustomerId()) || newBasketItem.getCustomerId().isBlank()) {
+        validateCustomerId(newBasketItem.getCustomerId());
+        validateAmount(newBasketItem.getAmount());
+    }
+
+    /**
+     * Validate the data of an item of a batch
+     *
+     * @param batchItem The item to be validated
+     * @throws QikServeException Throws an exception if any field is invalid
+     */
+    private void validateBatchItem(NewBasketBatchItem batchItem) {
+        // An item without product can't be found
+        if (Objects.isNull(batchItem.getProductId()) || batchItem.getProductId().isBlank()) {
+            throw new QikServeException(ErrorMessage.ERROR_PRODUCT_NOT_FOUND);
+        }
+        validateAmount(batchItem.getAmount());
+    }
+
+    /**
+     * Validate the customer identification
+     *
+     * @param customerId The customer identification
+     * @throws QikServeException Throws an exception if the identification is empty
+     */
+    private void validateCustomerId(String customerId) {
+        if (Objects.isNull(customerId) || customerId.isBlank()) {
             throw new QikServeException(ErrorMessage.ERROR_INVALID_CUSTOMER_ID);
         }
+    }
 
-        // Validates the amount
-        if (Objects.isNull(newBasketItem.getAmount()) || newBasketItem.getAmount().compareTo(BigInteger.ONE) < 0) {
+    /**
+     * Validate the units purchased
+     *
+     * @param amount The units purchased
+     * @throws QikServeException Throws an exception if the amount is not a positive number
+     */
+    private void validateAmount(BigInteger amount) {
+        if (Objects.isNull(amount) || amount.compareTo(BigInteger.ONE) < 0) {
             throw new QikServeException(ErrorMessage.ERROR_INVALID_AMOUNT);
         }
     }
@@ -117,10 +416,29 @@ public class BasketService {
      * @return Returns de closed basket
      */
     public Basket checkout(String customerId) {
+        if (openBasketStore.isEnabled()) {
+            // The basket is written at once, outside any other transaction
+            return openBasketStore.checkout(customerId);
+        }
+
+        return closeBasket(customerId);
+    }
+
+    /**
+     * Close the open basket of the giving customer stored in the database
+     *
+     * @param customerId The identification of the customer
+     * @throws QikServeException Throws an exception if the customer does not have an open basket
+     * @return Returns de closed basket
+     */
+    @Transactional
+    Basket closeBasket(String customerId) {
         // Searches for the current open basket of the customer
         var basket = basketRepository.findOpenBasket(customerId)
                 // If no basket is found, throws an exception
                 .orElseThrow(() -> new QikServeException(ErrorMessage.ERROR_NO_OPEN_BASKET));
+        backfillProductNames(basket);
+        basketPricing.ensurePriced(basket);
 
         // Closes de basket
         basket.setOpen(false);
@@ -0,0 +1,119 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Basket;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * An open basket as stored in a journal snapshot. Only the items are stored, the promotions and the combos are
+ * evaluated again when the basket is restored
+ *
+ * @author lczapparolli
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BasketSnapshot {
+
+    /**
+     * Identification of the basket in the database, empty if it was never written
+     */
+    private Long id;
+
+    /**
+     * Version of the basket in the database
+     */
+    private Long version;
+
+    /**
+     * Customer identification
+     */
+    private String customerId;
+
+    /**
+     * Sequence of the last journal event applied to the basket
+     */
+    private long lastSequence;
+
+    /**
+     * The items of the basket
+     */
+    private List<Item> items;
+
+    /**
+     * Captures the state of an open basket
+     *
+     * @param basket The basket to be captured
+     * @param lastSequence Sequence of the last journal event applied to the basket
+     * @return Returns the captured basket
+     */
+    public static BasketSnapshot of(Basket basket, long lastSequence) {
+        return BasketSnapshot.builder()
+                .id(basket.getId())
+                .version(basket.getVersion())
+                .customerId(basket.getCustomerId())
+                .lastSequence(lastSequence)
+                .items(basket.getItems()
+                        .stream()
+                        .map(item -> Item.builder()
+                                .id(item.getId())
+                                .version(item.getVersion())
+                                .productId(item.getProductId())
+                                .productName(item.getProductName())
+                                .unitPrice(item.getUnitPrice())
+                                .amount(item.getAmount())
+                                .build())
+                        .collect(Collectors.toCollection(ArrayList::new)))
+                .build();
+    }
+
+    /**
+     * An item of the basket
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+
+        /**
+         * Identification of the item in the database, empty if it was never written
+         */
+        private Long id;
+
+        /**
+         * Version of the item in the database
+         */
+        private Long version;
+
+        /**
+         * Product identification
+         */
+        private String productId;
+
+        /**
+         * Product name
+         */
+        private String productName;
+
+        /**
+         * Price of one unit of the product (in cents)
+         */
+        private BigInteger unitPrice;
+
+        /**
+         * Number of units in the basket
+         */
+        private BigInteger amount;
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package br.zapparolli.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker that stops calling a failing dependency for a while.
+ * After a number of consecutive failures the circuit opens and every request is rejected. Once the open
+ * duration has passed, a single trial request is allowed: a success closes the circuit, a failure opens it again.
+ *
+ * @author lczapparolli
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of the circuit
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Number of consecutive failures that opens the circuit
+     */
+    private final int failureThreshold;
+
+    /**
+     * Time the circuit stays open before a trial request is allowed, in nanoseconds
+     */
+    private final long openNanos;
+
+    /**
+     * Source of the current time, in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private volatile State state = State.CLOSED;
+
+    /**
+     * Creates a new closed circuit breaker
+     *
+     * @param failureThreshold Number of consecutive failures that opens the circuit
+     * @param openDuration Time the circuit stays open before a trial request is allowed
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    /**
+     * Creates a new closed circuit breaker with the given clock
+     *
+     * @param failureThreshold Number of consecutive failures that opens the circuit
+     * @param openDuration Time the circuit stays open before a trial request is allowed
+     * @param clock Source of the current time, in nanoseconds
+     */
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Checks if a request can be sent to the dependency
+     *
+     * @return Returns true if the request is allowed
+     */
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        // Rejects the requests until the open duration has passed
+        var now = clock.getAsLong();
+        var since = openedAt.get();
+        if (now - since < openNanos) {
+            return false;
+        }
+
+        // Only one request wins the trial, the others keep being rejected
+        if (openedAt.compareAndSet(since, now)) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a successful request, closing the circuit
+     */
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records a failed request, opening the circuit if the threshold is reached or if it was a trial request
+     */
+    public void onFailure() {
+        if (state == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.set(clock.getAsLong());
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Closes the circuit, discarding the failures recorded
+     */
+    public void reset() {
+        onSuccess();
+    }
+
+    /**
+     * Get the current state of the circuit
+     *
+     * @return Returns the state
+     */
+    public State getState() {
+        return state;
+    }
+
+}
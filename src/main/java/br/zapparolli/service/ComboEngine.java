@@ -0,0 +1,191 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketCombo;
+import br.zapparolli.entity.BasketItem;
+import br.zapparolli.entity.Combo;
+import br.zapparolli.entity.ComboType;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Matches the combos against the items of a basket.
+ * The matching is incremental: when a line changes, only the combos that involve its product are evaluated again,
+ * keeping the units already used by the other combos of the basket.
+ * A completion never discounts more than its units cost after the promotions of their lines, so the combos and the
+ * promotions together can't make the basket negative.
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class ComboEngine {
+
+    @Inject
+    ComboIndex comboIndex;
+
+    /**
+     * Updates the combos of the basket after the amount of the given product has changed
+     *
+     * @param basket The basket to be updated
+     * @param productId The identification of the changed product
+     * @return Returns the change in the discount given by the combos, in cents
+     */
+    public long apply(Basket basket, String productId) {
+        var candidates = comboIndex.findByProduct(productId);
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        var candidateIds = candidates.stream()
+                .map(Combo::getId)
+                .collect(Collectors.toSet());
+        var lines = basket.getItemsByProduct();
+
+        // Units held by the combos that are not evaluated again
+        var usedAmounts = new HashMap<String, Long>();
+        var appliedCombos = new HashMap<Long, BasketCombo>();
+        for (var basketCombo : basket.getCombos()) {
+            var combo = basketCombo.getCombo();
+            if (candidateIds.contains(combo.getId())) {
+                appliedCombos.put(combo.getId(), basketCombo);
+            } else {
+                useUnits(combo, basketCombo.getTimes().longValueExact(), usedAmounts);
+            }
+        }
+
+        var previousDiscount = 0L;
+        for (var basketCombo : appliedCombos.values()) {
+            previousDiscount = Math.addExact(previousDiscount, basketCombo.getDiscount().longValueExact());
+        }
+        var newDiscount = 0L;
+
+        // The combos with the greatest discount take the units first
+        var sortedCandidates = candidates.stream()
+                .sorted(Comparator.comparingLong((Combo combo) -> getComboDiscount(combo, lines)).reversed()
+                        .thenComparing(Combo::getId))
+                .collect(Collectors.toList());
+        for (var combo : sortedCandidates) {
+            var times = getTimes(combo, lines, usedAmounts);
+            var basketCombo = appliedCombos.get(combo.getId());
+
+            if (times == 0) {
+                // The combo is no longer complete
+                if (Objects.nonNull(basketCombo)) {
+                    basket.getCombos().remove(basketCombo);
+                }
+                continue;
+            }
+
+            if (Objects.isNull(basketCombo)) {
+                basketCombo = BasketCombo.newBasketCombo(basket, combo);
+            }
+            var discount = Math.multiplyExact(getComboDiscount(combo, lines), times);
+            basketCombo.setTimes(BigInteger.valueOf(times));
+            basketCombo.setDiscount(BigInteger.valueOf(discount));
+            newDiscount = Math.addExact(newDiscount, discount);
+
+            useUnits(combo, times, usedAmounts);
+        }
+
+        return Math.subtractExact(newDiscount, previousDiscount);
+    }
+
+    /**
+     * Records the units held by a combo completed a number of times
+     *
+     * @param combo The combo
+     * @param times Number of times the combo was completed
+     * @param usedAmounts The units already used, indexed by the product identification
+     */
+    private void useUnits(Combo combo, long times, Map<String, Long> usedAmounts) {
+        for (var item : combo.getItems()) {
+            usedAmounts.merge(item.getProductId(),
+                    Math.multiplyExact(combo.getRequiredAmount(item).longValueExact(), times), Math::addExact);
+        }
+    }
+
+    /**
+     * Calculates how many times the combo can be completed with the units not used by other combos
+     *
+     * @param combo The combo to be checked
+     * @param lines The basket items indexed by the product identification
+     * @param usedAmounts The units already used by other combos
+     * @return Returns the number of times, or zero if the combo is not complete
+     */
+    private long getTimes(Combo combo, Map<String, BasketItem> lines, Map<String, Long> usedAmounts) {
+        if (combo.getItems().isEmpty()) {
+            return 0;
+        }
+
+        var times = Long.MAX_VALUE;
+        for (var item : combo.getItems()) {
+            var line = lines.get(item.getProductId());
+            if (Objects.isNull(line)) {
+                return 0;
+            }
+
+            var available = line.getAmount().longValueExact() - usedAmounts.getOrDefault(item.getProductId(), 0L);
+            var itemTimes = Math.max(available, 0) / combo.getRequiredAmount(item).longValueExact();
+            times = Math.min(times, itemTimes);
+        }
+
+        return times;
+    }
+
+    /**
+     * Get the discount of a single completion of the combo, limited to the value of the units it uses
+     *
+     * @param combo The combo
+     * @param lines The basket items indexed by the product identification, used to get the price of the units
+     * @return Returns the discount value, in cents
+     */
+    private long getComboDiscount(Combo combo, Map<String, BasketItem> lines) {
+        var completionValue = getCompletionValue(combo, lines);
+        if (combo.getType() == ComboType.BUNDLE) {
+            return Math.min(combo.getDiscount().longValueExact(), completionValue);
+        }
+
+        // The free units are valued with the price of the basket item, after its promotion
+        var line = lines.get(combo.getItems().get(0).getProductId());
+        return Objects.isNull(line) ? 0 : Math.min(Math.multiplyExact(getDiscountedUnitPrice(line), combo.getFreeAmount().longValueExact()), completionValue);
+    }
+
+    /**
+     * Calculates the value of the units used by a single completion of the combo, after the promotions of their lines
+     *
+     * @param combo The combo
+     * @param lines The basket items indexed by the product identification
+     * @return Returns the value in cents, or zero if a product of the combo is not in the basket
+     */
+    private long getCompletionValue(Combo combo, Map<String, BasketItem> lines) {
+        var value = 0L;
+        for (var item : combo.getItems()) {
+            var line = lines.get(item.getProductId());
+            if (Objects.isNull(line)) {
+                return 0;
+            }
+            value = Math.addExact(value, Math.multiplyExact(getDiscountedUnitPrice(line), combo.getRequiredAmount(item).longValueExact()));
+        }
+
+        return value;
+    }
+
+    /**
+     * Get the price of a unit of the line after the discount of its promotion
+     *
+     * @param line The basket item
+     * @return Returns the price in cents, never negative
+     */
+    private long getDiscountedUnitPrice(BasketItem line) {
+        var unitDiscount = Objects.isNull(line.getPromotion()) ? 0 : line.getPromotion().getUnitDiscount().longValueExact();
+        return Math.max(Math.subtractExact(line.getUnitPrice().longValueExact(), unitDiscount), 0);
+    }
+
+}
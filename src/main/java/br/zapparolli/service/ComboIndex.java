@@ -0,0 +1,131 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Combo;
+import br.zapparolli.entity.ComboItem;
+import br.zapparolli.repository.ComboRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the combos by each product they involve, so a change in a basket line only
+ * evaluates the combos of that product
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class ComboIndex {
+
+    @Inject
+    ComboRepository comboRepository;
+
+    /**
+     * The combos indexed by the identification of each of their products
+     */
+    private volatile Map<String, List<Combo>> combos = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the replacement of the index and the combos created while it's rebuilt
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The combos created while the index is rebuilt, which the database read may have missed. Null when no rebuild
+     * is running
+     */
+    private List<Combo> createdDuringRebuild;
+
+    /**
+     * Loads the index when the application starts
+     *
+     * @param event The startup event
+     */
+    void onStart(@Observes StartupEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Reloads all combos from the database, applying the ones created by other instances
+     */
+    @Transactional
+    @Scheduled(every = "{qikserve.promotion-index.refresh-every}", delayed = "{qikserve.promotion-index.refresh-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public synchronized void rebuild() {
+        synchronized (lock) {
+            createdDuringRebuild = new ArrayList<>();
+        }
+
+        var index = new ConcurrentHashMap<String, List<Combo>>();
+        for (var combo : comboRepository.listAll()) {
+            combo.getItems().forEach(item -> index.computeIfAbsent(item.getProductId(), productId -> new ArrayList<>()).add(combo));
+        }
+
+        // The lists are not changed after published
+        index.replaceAll((productId, list) -> List.copyOf(list));
+
+        synchronized (lock) {
+            // The combos committed during the read are applied again, replacing the same combo if already read
+            createdDuringRebuild.forEach(combo -> add(index, combo));
+            createdDuringRebuild = null;
+            combos = index;
+        }
+    }
+
+    /**
+     * Adds a combo to the index once the transaction that created it is committed
+     *
+     * @param combo The created combo
+     */
+    void onComboCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) Combo combo) {
+        synchronized (lock) {
+            add(combos, combo);
+            // A running rebuild replaces the index, so it must apply the combo too
+            if (Objects.nonNull(createdDuringRebuild)) {
+                createdDuringRebuild.add(combo);
+            }
+        }
+    }
+
+    /**
+     * Adds a combo to the lists of its products, replacing the combo with the same identification
+     *
+     * @param index The index to be changed
+     * @param combo The combo to be added
+     */
+    private static void add(Map<String, List<Combo>> index, Combo combo) {
+        for (ComboItem item : combo.getItems()) {
+            // The lists are copied, so readers never see a partial change
+            index.compute(item.getProductId(), (productId, list) -> {
+                var updated = new ArrayList<Combo>();
+                if (Objects.nonNull(list)) {
+                    list.stream()
+                            .filter(indexed -> Objects.isNull(combo.getId()) || !combo.getId().equals(indexed.getId()))
+                            .forEach(updated::add);
+                }
+                updated.add(combo);
+                return List.copyOf(updated);
+            });
+        }
+    }
+
+    /**
+     * Find the combos that involve the given product
+     *
+     * @param productId The product identification
+     * @return Returns the combos or an empty list
+     */
+    public List<Combo> findByProduct(String productId) {
+        return combos.getOrDefault(productId, List.of());
+    }
+
+}
@@ -0,0 +1,113 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Combo;
+import br.zapparolli.entity.ComboType;
+import br.zapparolli.exception.ErrorMessage;
+import br.zapparolli.exception.QikServeException;
+import br.zapparolli.model.ComboProduct;
+import br.zapparolli.model.NewCombo;
+import br.zapparolli.repository.ComboRepository;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Service for managing combos
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class ComboService {
+
+    @Inject
+    ComboRepository comboRepository;
+
+    @Inject
+    ProductService productService;
+
+    @Inject
+    Event<Combo> comboCreated;
+
+    /**
+     * Create a new combo
+     *
+     * @param newCombo The data of the new combo
+     * @throws QikServeException Throws an exception if there is any error
+     * @return Returns the inserted combo
+     */
+    @Transactional
+    public Combo createCombo(NewCombo newCombo) {
+        validateCombo(newCombo);
+        var combo = Combo.newCombo(newCombo);
+
+        comboRepository.persist(combo);
+        // Updates the index after the commit
+        comboCreated.fire(combo);
+
+        return combo;
+    }
+
+    /**
+     * Get all combos
+     *
+     * @return Returns the list of combos
+     */
+    public List<Combo> getAllCombos() {
+        return comboRepository.listAll();
+    }
+
+    /**
+     * Validate the combo data
+     *
+     * @param newCombo The combo to be validated
+     * @throws QikServeException Throws an exception if there is any error with the data
+     */
+    private void validateCombo(NewCombo newCombo) {
+        // Checks the name and the type
+        if (Objects.isNull(newCombo.getName()) || newCombo.getName().isBlank()) {
+            throw new QikServeException(ErrorMessage.ERROR_COMBO_INVALID_NAME);
+        }
+        if (Objects.isNull(newCombo.getType())) {
+            throw new QikServeException(ErrorMessage.ERROR_COMBO_INVALID_TYPE);
+        }
+
+        // Checks the products and amounts
+        var items = Objects.requireNonNullElse(newCombo.getItems(), List.<ComboProduct>of());
+        var productIds = items.stream()
+                .map(ComboProduct::getProductId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        var validAmounts = items.stream()
+                .allMatch(item -> Objects.nonNull(item.getAmount()) && item.getAmount().compareTo(BigInteger.ONE) >= 0);
+        if (items.isEmpty() || productIds.size() != items.size() || !validAmounts) {
+            throw new QikServeException(ErrorMessage.ERROR_COMBO_INVALID_ITEMS);
+        }
+
+        // Checks if the products exist
+        var products = productService.findProducts(productIds);
+
+        if (newCombo.getType() == ComboType.BUY_X_GET_Y) {
+            // Checks the free units
+            if (items.size() != 1 || Objects.isNull(newCombo.getFreeAmount()) || newCombo.getFreeAmount().compareTo(BigInteger.ONE) < 0) {
+                throw new QikServeException(ErrorMessage.ERROR_COMBO_INVALID_FREE_AMOUNT);
+            }
+            return;
+        }
+
+        // Checks if the discount is less than the value of the products
+        var bundleValue = items.stream()
+                .map(item -> products.get(item.getProductId()).getPrice().multiply(item.getAmount()))
+                .reduce(BigInteger.ZERO, BigInteger::add);
+        if (Objects.isNull(newCombo.getDiscount()) || newCombo.getDiscount().compareTo(BigInteger.ONE) < 0
+                || newCombo.getDiscount().compareTo(bundleValue) >= 0) {
+            throw new QikServeException(ErrorMessage.ERROR_COMBO_INVALID_DISCOUNT);
+        }
+    }
+
+}
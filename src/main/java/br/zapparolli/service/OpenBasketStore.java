@@ -0,0 +1,956 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketCombo;
+import br.zapparolli.entity.BasketItem;
+import br.zapparolli.exception.ErrorMessage;
+import br.zapparolli.exception.QikServeException;
+import br.zapparolli.model.Product;
+import br.zapparolli.repository.BasketRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the open baskets in memory, so adding items doesn't need a database transaction.
+ * The baskets are split in shards by the customer identification and the changes of a shard are serialized, without
+ * any lock shared by all customers. The changed baskets are written to the database in batches, in background, and
+ * a basket is written at once when it's checked out. The writes in background don't hold the shard, so its customers
+ * keep being served while the database is written.
+ * <p>
+ * The baskets not used for a while leave the memory once they are written, so abandoned baskets don't accumulate.
+ * They are loaded again from the database on their next use.
+ * <p>
+ * After a crash, the open baskets are loaded again from the database as they were in the last write, so the changes
+ * made after it are lost. The interval between the writes bounds how much can be lost.
+ * <p>
+ * When the journal is enabled, every change is appended to the {@link BasketJournal} before it's applied and the open
+ * baskets are not written to the database until they are checked out. At startup, the baskets are restored from the
+ * last snapshot and the events appended after it, so no acknowledged change is lost.
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class OpenBasketStore {
+
+    private static final Logger LOG = Logger.getLogger(OpenBasketStore.class);
+
+    @Inject
+    BasketRepository basketRepository;
+
+    @Inject
+    BasketPricing basketPricing;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    /**
+     * Indicates if the open baskets are kept in memory
+     */
+    @ConfigProperty(name = "qikserve.basket-store.enabled", defaultValue = "false")
+    boolean enabled;
+
+    /**
+     * Number of shards the baskets are split into
+     */
+    @ConfigProperty(name = "qikserve.basket-store.shards", defaultValue = "16")
+    int shardCount;
+
+    /**
+     * Time without use after which an open basket is removed from memory
+     */
+    @ConfigProperty(name = "qikserve.basket-store.idle-timeout", defaultValue = "PT30M")
+    Duration idleTimeout;
+
+    /**
+     * Indicates if the changes of the open baskets are written to the journal instead of the database
+     */
+    @ConfigProperty(name = "qikserve.basket-journal.enabled", defaultValue = "false")
+    boolean journalEnabled;
+
+    /**
+     * The directory of the journal files
+     */
+    @ConfigProperty(name = "qikserve.basket-journal.directory", defaultValue = "journal")
+    String journalDirectory;
+
+    /**
+     * Number of events appended to the journal that triggers a new snapshot
+     */
+    @ConfigProperty(name = "qikserve.basket-journal.snapshot-after", defaultValue = "10000")
+    long snapshotAfter;
+
+    /**
+     * Time the journal segments covered by a snapshot are kept in the archive
+     */
+    @ConfigProperty(name = "qikserve.basket-journal.archive-retention", defaultValue = "P7D")
+    Duration archiveRetention;
+
+    /**
+     * The shards of the store
+     */
+    private Shard[] shards;
+
+    /**
+     * The journal of the changes, empty if it's not enabled
+     */
+    private volatile BasketJournal journal;
+
+    /**
+     * Held by the additions from the moment their events are queued until they are applied, and exclusively by the
+     * snapshot while the baskets are captured, so the snapshot contains every event of the segments it covers
+     */
+    private final ReadWriteLock appendLock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates the shards
+     */
+    @PostConstruct
+    void initShards() {
+        shards = new Shard[shardCount];
+        for (var index = 0; index < shardCount; index++) {
+            shards[index] = new Shard();
+        }
+        Gauge.builder("basket.store.baskets", this, OpenBasketStore::getBasketCount)
+                .description("Open baskets kept in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the number of open baskets kept in memory
+     *
+     * @return Returns the number of baskets of all shards
+     */
+    public int getBasketCount() {
+        var count = 0;
+        for (var shard : shards) {
+            synchronized (shard) {
+                count += shard.baskets.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the open baskets are kept in memory
+     *
+     * @return Returns true if the store is enabled
+     */
+    public boolean isEnabled() {
+        return enabled || journalEnabled;
+    }
+
+    /**
+     * Adds units of several products to the open basket of the customer, creating it if not exists
+     *
+     * @param customerId The customer identification
+     * @param additions The units to be added of each product
+     * @return Returns a copy of the changed basket
+     */
+    public Basket addProducts(String customerId, Map<Product, BigInteger> additions) {
+        var shard = getShard(customerId);
+        var currentJournal = journal;
+        if (Objects.nonNull(currentJournal)) {
+            return appendProducts(shard, currentJournal, customerId, additions);
+        }
+
+        synchronized (shard) {
+            var basket = getOrLoad(shard, customerId)
+                    .orElseGet(() -> Basket.newBasket(customerId));
+
+            // Nothing is written if the values of the basket would not fit in cents
+            basketPricing.validateAdditions(basket, additions);
+
+            shard.dirtyCustomers.add(customerId);
+            put(shard, customerId, basket);
+            additions.forEach((product, amount) -> basketPricing.addProduct(basket, product, amount));
+
+            return copyOf(basket);
+        }
+    }
+
+    /**
+     * Appends the units added to the journal and applies them to the basket once they are written. The shard is only
+     * held to queue the events and to apply them, so the additions of its customers share the disk sync
+     *
+     * @param shard The shard of the customer
+     * @param currentJournal The journal of the changes
+     * @param customerId The customer identification
+     * @param additions The units to be added of each product
+     * @return Returns a copy of the changed basket
+     */
+    private Basket appendProducts(Shard shard, BasketJournal currentJournal, String customerId, Map<Product, BigInteger> additions) {
+        // A snapshot waits for the queued additions to be applied
+        appendLock.readLock().lock();
+        try {
+            Basket basket;
+            CompletableFuture<List<BasketEvent>> written;
+            synchronized (shard) {
+                basket = Optional.ofNullable(shard.creating.get(customerId))
+                        .or(() -> getOrLoad(shard, customerId))
+                        .orElseGet(() -> Basket.newBasket(customerId));
+
+                // Nothing is written if the values of the basket, with the additions not applied yet, would not fit in cents
+                basketPricing.validateAdditions(basket, merge(shard.pendingAdditions.getOrDefault(customerId, List.of()), additions));
+
+                written = currentJournal.appendAllAsync(additions.entrySet()
+                        .stream()
+                        .map(addition -> BasketEvent.add(customerId, addition.getKey(), addition.getValue()))
+                        .collect(Collectors.toList()));
+                shard.pendingAdditions.computeIfAbsent(customerId, key -> new ArrayList<>()).add(additions);
+                // A new basket is only visible once its first change is written
+                if (!shard.baskets.containsKey(customerId)) {
+                    shard.creating.put(customerId, basket);
+                }
+            }
+
+            try {
+                // The change is durable before it's visible, the shard is not held while the disk is synced
+                var events = BasketJournal.await(written);
+                synchronized (shard) {
+                    shard.creating.remove(customerId);
+                    put(shard, customerId, basket);
+                    shard.lastSequences.merge(customerId, events.get(events.size() - 1).getSequence(), Math::max);
+                    additions.forEach((product, amount) -> basketPricing.addProduct(basket, product, amount));
+
+                    return copyOf(basket);
+                }
+            } finally {
+                synchronized (shard) {
+                    var pending = shard.pendingAdditions.get(customerId);
+                    pending.remove(additions);
+                    if (pending.isEmpty()) {
+                        shard.pendingAdditions.remove(customerId);
+                        // A new basket whose additions all failed is dropped
+                        shard.creating.remove(customerId);
+                    }
+                    shard.notifyAll();
+                }
+            }
+        } finally {
+            appendLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sums the units of the additions not applied yet and a new one, by product
+     *
+     * @param pending The additions not applied yet
+     * @param additions The new addition
+     * @return Returns the units of each product
+     */
+    private static Map<Product, BigInteger> merge(List<Map<Product, BigInteger>> pending, Map<Product, BigInteger> additions) {
+        var merged = new HashMap<Product, BigInteger>();
+        pending.forEach(addition -> addition.forEach((product, amount) -> merged.merge(product, amount, BigInteger::add)));
+        additions.forEach((product, amount) -> merged.merge(product, amount, BigInteger::add));
+
+        return merged;
+    }
+
+    /**
+     * Get the journal of the changes
+     *
+     * @return Returns the journal or null if it's not enabled
+     */
+    BasketJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Find the open basket of the customer
+     *
+     * @param customerId The customer identification
+     * @return Returns a copy of the basket or an empty {@link Optional}
+     */
+    public Optional<Basket> find(String customerId) {
+        var shard = getShard(customerId);
+        synchronized (shard) {
+            return getOrLoad(shard, customerId).map(this::copyOf);
+        }
+    }
+
+    /**
+     * Closes the open basket of the customer, writing it to the database at once
+     *
+     * @param customerId The customer identification
+     * @throws QikServeException Throws an exception if the customer does not have an open basket
+     * @return Returns the closed basket
+     */
+    public Basket checkout(String customerId) {
+        var shard = getShard(customerId);
+        synchronized (shard) {
+            // The basket can't be written while a copy of it is written in background
+            awaitWrite(shard, customerId);
+            var basket = getOrLoad(shard, customerId)
+                    .orElseThrow(() -> new QikServeException(ErrorMessage.ERROR_NO_OPEN_BASKET));
+
+            var previousSequence = basket.getJournalSequence();
+            var currentJournal = journal;
+            Long checkoutSequence = null;
+            if (Objects.nonNull(currentJournal)) {
+                // The checkout is recorded first, so the replay completes it if the basket is not written
+                checkoutSequence = currentJournal.append(BasketEvent.checkout(customerId)).getSequence();
+                basket.setJournalSequence(checkoutSequence);
+            }
+
+            basket.setOpen(false);
+            try {
+                var closedBasket = save(List.of(basket)).get(0);
+                remove(shard, customerId);
+
+                return closedBasket;
+            } catch (RuntimeException exception) {
+                // The basket stays open in memory
+                basket.setOpen(true);
+                basket.setJournalSequence(previousSequence);
+                if (Objects.nonNull(checkoutSequence)) {
+                    abortCheckout(currentJournal, customerId, checkoutSequence, exception);
+                }
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Records that a checkout event was not written to the database, so the replay doesn't close the basket
+     *
+     * @param currentJournal The journal of the checkout event
+     * @param customerId The customer identification
+     * @param checkoutSequence The sequence of the checkout event
+     * @param failure The failure of the checkout
+     */
+    private void abortCheckout(BasketJournal currentJournal, String customerId, long checkoutSequence, RuntimeException failure) {
+        try {
+            currentJournal.append(BasketEvent.checkoutAborted(customerId, checkoutSequence));
+        } catch (UncheckedIOException | IllegalStateException exception) {
+            // The replay will close the basket the customer still sees as open
+            LOG.errorf(exception, "Could not record the failed checkout %d of the customer %s", checkoutSequence, customerId);
+            failure.addSuppressed(exception);
+        }
+    }
+
+    /**
+     * Writes the changed baskets to the database, one batch per shard
+     */
+    @Scheduled(every = "{qikserve.basket-store.flush-every}", delayed = "{qikserve.basket-store.flush-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        for (var shard : shards) {
+            flushShard(shard);
+        }
+    }
+
+    /**
+     * Removes from memory the baskets not used for longer than the idle timeout, once they are written
+     */
+    @Scheduled(every = "{qikserve.basket-store.evict-every}", delayed = "{qikserve.basket-store.evict-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void evictIdle() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        var idleSince = System.nanoTime() - idleTimeout.toNanos();
+        for (var shard : shards) {
+            evictShard(shard, idleSince);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the open baskets once enough events were appended to the journal
+     */
+    @Scheduled(every = "{qikserve.basket-journal.snapshot-check}", delayed = "{qikserve.basket-journal.snapshot-check}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void snapshotIfNeeded() {
+        var currentJournal = journal;
+        if (Objects.nonNull(currentJournal) && currentJournal.getEventsSinceSnapshot() >= snapshotAfter) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the open baskets, removing the journal segments it covers
+     */
+    public void snapshot() {
+        var currentJournal = journal;
+        if (Objects.nonNull(currentJournal)) {
+            currentJournal.snapshot(this::captureState);
+        }
+    }
+
+    /**
+     * Restores the open baskets from the journal when the application starts, after the promotions and combos
+     * indexes are loaded
+     *
+     * @param event The startup event
+     */
+    void onStart(@Observes @Priority(Interceptor.Priority.APPLICATION + 1000) StartupEvent event) {
+        if (!journalEnabled) {
+            return;
+        }
+
+        recover();
+        FunctionCounter.builder("basket.journal.events", this, store -> Optional.ofNullable(store.journal).map(BasketJournal::getAppendedEvents).orElse(0L))
+                .description("Basket events appended to the journal")
+                .register(meterRegistry);
+        FunctionCounter.builder("basket.journal.syncs", this, store -> Optional.ofNullable(store.journal).map(BasketJournal::getSyncs).orElse(0L))
+                .description("Disk syncs of the basket journal, shared by the events appended together")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Writes the pending changes when the application stops
+     *
+     * @param event The shutdown event
+     */
+    void onStop(@Observes ShutdownEvent event) {
+        flush();
+
+        var currentJournal = journal;
+        if (Objects.nonNull(currentJournal)) {
+            snapshot();
+            currentJournal.close();
+        }
+    }
+
+    /**
+     * Drops all baskets kept in memory without writing them, as a crash would do
+     */
+    void discard() {
+        for (var shard : shards) {
+            synchronized (shard) {
+                shard.baskets.clear();
+                shard.creating.clear();
+                shard.dirtyCustomers.clear();
+                shard.lastSequences.clear();
+                shard.lastAccess.clear();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the open baskets from the last snapshot and the events appended after it, then starts appending the
+     * new events. Any basket kept in memory is discarded
+     */
+    void recover() {
+        if (Objects.nonNull(journal)) {
+            journal.close();
+            journal = null;
+        }
+        discard();
+
+        var recoveredJournal = new BasketJournal(Path.of(journalDirectory), archiveRetention);
+        recoveredJournal.readSnapshot().ifPresent(snapshot -> restoreSnapshot(snapshot.getState()));
+        var events = recoveredJournal.readEvents();
+        // The checkouts that failed left their baskets open
+        var abortedCheckouts = events.stream()
+                .filter(event -> event.getType() == BasketEvent.Type.CHECKOUT_ABORTED)
+                .map(BasketEvent::getCheckoutSequence)
+                .collect(Collectors.toSet());
+        events.forEach(event -> replay(event, abortedCheckouts));
+
+        recoveredJournal.start();
+        journal = recoveredJournal;
+        LOG.infof("Open baskets restored from the journal, %d events replayed", events.size());
+    }
+
+    /**
+     * Captures the open baskets to be stored in a snapshot
+     *
+     * @return Returns the serialized baskets
+     */
+    private byte[] captureState() {
+        var baskets = new ArrayList<BasketSnapshot>();
+        appendLock.writeLock().lock();
+        try {
+            for (var shard : shards) {
+                synchronized (shard) {
+                    shard.baskets.forEach((customerId, basket) -> baskets.add(
+                            BasketSnapshot.of(basket, shard.lastSequences.getOrDefault(customerId, 0L))));
+                }
+            }
+        } finally {
+            appendLock.writeLock().unlock();
+        }
+
+        try {
+            return objectMapper.writeValueAsBytes(baskets);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not serialize the open baskets", exception);
+        }
+    }
+
+    /**
+     * Restores the open baskets stored in a snapshot
+     *
+     * @param state The serialized baskets
+     */
+    private void restoreSnapshot(byte[] state) {
+        List<BasketSnapshot> baskets;
+        try {
+            baskets = objectMapper.readValue(state, new TypeReference<List<BasketSnapshot>>() { });
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not read the open baskets of the snapshot", exception);
+        }
+
+        for (var basketSnapshot : baskets) {
+            var shard = getShard(basketSnapshot.getCustomerId());
+            synchronized (shard) {
+                put(shard, basketSnapshot.getCustomerId(), restoreBasket(basketSnapshot));
+                shard.lastSequences.put(basketSnapshot.getCustomerId(), basketSnapshot.getLastSequence());
+            }
+        }
+    }
+
+    /**
+     * Creates an open basket from its snapshot, evaluating again its promotions and combos
+     *
+     * @param basketSnapshot The basket stored in the snapshot
+     * @return Returns the restored basket
+     */
+    private Basket restoreBasket(BasketSnapshot basketSnapshot) {
+        var basket = Basket.newBasket(basketSnapshot.getCustomerId());
+        basket.setId(basketSnapshot.getId());
+        basket.setVersion(basketSnapshot.getVersion());
+        for (var item : basketSnapshot.getItems()) {
+            basket.addItem(BasketItem.builder()
+                    .id(item.getId())
+                    .version(item.getVersion())
+                    .basket(basket)
+                    .productId(item.getProductId())
+                    .productName(item.getProductName())
+                    .unitPrice(item.getUnitPrice())
+                    .amount(item.getAmount())
+                    .build());
+        }
+        basketPricing.reprice(basket);
+
+        return basket;
+    }
+
+    /**
+     * Applies an event read from the journal, skipping the ones already in the snapshot and the aborted checkouts
+     *
+     * @param event The event to be applied
+     * @param abortedCheckouts The sequences of the checkouts aborted
+     */
+    private void replay(BasketEvent event, Set<Long> abortedCheckouts) {
+        if (event.getType() == BasketEvent.Type.CHECKOUT_ABORTED || abortedCheckouts.contains(event.getSequence())) {
+            return;
+        }
+
+        var customerId = event.getCustomerId();
+        var shard = getShard(customerId);
+        synchronized (shard) {
+            // A basket removed from memory was written with the sequence of its last event, so it's loaded first
+            var basket = getOrLoad(shard, customerId);
+            var lastSequence = shard.lastSequences.get(customerId);
+            if (Objects.nonNull(lastSequence) && event.getSequence() <= lastSequence) {
+                return;
+            }
+
+            if (event.getType() == BasketEvent.Type.ADD) {
+                var openBasket = basket.orElseGet(() -> Basket.newBasket(customerId));
+                put(shard, customerId, openBasket);
+                basketPricing.addProduct(openBasket, event.getProduct(), event.getAmount());
+                shard.lastSequences.put(customerId, event.getSequence());
+                return;
+            }
+
+            // The checkout is written again only if it was not written before the application stopped
+            if (basket.isPresent() && !isCheckedOut(event.getSequence())) {
+                basket.get().setOpen(false);
+                basket.get().setJournalSequence(event.getSequence());
+                save(List.of(basket.get()));
+            }
+            remove(shard, customerId);
+        }
+    }
+
+    /**
+     * Checks if the checkout of a journal event was written to the database
+     *
+     * @param journalSequence Sequence of the checkout event
+     * @return Returns true if it was written
+     */
+    @Transactional
+    boolean isCheckedOut(long journalSequence) {
+        return basketRepository.existsByJournalSequence(journalSequence);
+    }
+
+    /**
+     * Removes the basket of the customer from memory. The shard must be locked by the caller
+     *
+     * @param shard The shard of the customer
+     * @param customerId The customer identification
+     */
+    private void remove(Shard shard, String customerId) {
+        shard.baskets.remove(customerId);
+        shard.dirtyCustomers.remove(customerId);
+        shard.lastSequences.remove(customerId);
+        shard.lastAccess.remove(customerId);
+    }
+
+    /**
+     * Keeps the basket of the customer in memory, as just used. The shard must be locked by the caller
+     *
+     * @param shard The shard of the customer
+     * @param customerId The customer identification
+     * @param basket The open basket
+     */
+    private void put(Shard shard, String customerId, Basket basket) {
+        shard.baskets.put(customerId, basket);
+        shard.lastAccess.put(customerId, System.nanoTime());
+    }
+
+    /**
+     * Waits until the basket of the customer is not being written in background and has no additions waiting for the
+     * journal. The shard must be locked by the caller, and is released while waiting
+     *
+     * @param shard The shard of the customer
+     * @param customerId The customer identification
+     * @throws QikServeException Throws an exception if interrupted while waiting
+     */
+    private void awaitWrite(Shard shard, String customerId) {
+        while (shard.writing.contains(customerId) || shard.pendingAdditions.containsKey(customerId)) {
+            try {
+                shard.wait();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new QikServeException(ErrorMessage.ERROR_BASKET_CONFLICT);
+            }
+        }
+    }
+
+    /**
+     * Writes the changed baskets of a shard. Copies of the baskets are written without holding the shard
+     *
+     * @param shard The shard to be written
+     */
+    private void flushShard(Shard shard) {
+        var copies = new HashMap<String, Basket>();
+        synchronized (shard) {
+            for (var customerId : shard.dirtyCustomers) {
+                // A basket already being written is written again in the next flush
+                if (!shard.writing.contains(customerId)) {
+                    copies.put(customerId, copyOf(shard.baskets.get(customerId)));
+                }
+            }
+            // The changes made while the copies are written mark the baskets as changed again
+            shard.dirtyCustomers.removeAll(copies.keySet());
+            shard.writing.addAll(copies.keySet());
+        }
+        if (copies.isEmpty()) {
+            return;
+        }
+
+        var savedBaskets = saveCopies(copies);
+        synchronized (shard) {
+            if (Objects.isNull(savedBaskets)) {
+                // The baskets are written in the next attempt
+                copies.keySet()
+                        .stream()
+                        .filter(shard.baskets::containsKey)
+                        .forEach(shard.dirtyCustomers::add);
+            } else {
+                savedBaskets.forEach(this::applyIdentifiers);
+            }
+            shard.writing.removeAll(copies.keySet());
+            shard.notifyAll();
+        }
+    }
+
+    /**
+     * Removes from memory the baskets of a shard not used since the given time. In the database mode, only the baskets
+     * without pending changes are removed. In the journal mode, the baskets are written with the sequence of their last
+     * event first, so the replay skips the events already written
+     *
+     * @param shard The shard to be checked
+     * @param idleSince The time of the last use of the removed baskets, from {@link System#nanoTime()}
+     */
+    private void evictShard(Shard shard, long idleSince) {
+        var copies = new HashMap<String, Basket>();
+        var lastAccesses = new HashMap<String, Long>();
+        synchronized (shard) {
+            var idleCustomers = shard.lastAccess.entrySet()
+                    .stream()
+                    .filter(entry -> entry.getValue() - idleSince <= 0 && !shard.writing.contains(entry.getKey()))
+                    // A basket with additions waiting for the journal is still in use
+                    .filter(entry -> !shard.pendingAdditions.containsKey(entry.getKey()))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            for (var customerId : idleCustomers) {
+                if (Objects.nonNull(journal)) {
+                    var copy = copyOf(shard.baskets.get(customerId));
+                    Optional.ofNullable(shard.lastSequences.get(customerId)).ifPresent(copy::setJournalSequence);
+                    copies.put(customerId, copy);
+                    lastAccesses.put(customerId, shard.lastAccess.get(customerId));
+                } else if (!shard.dirtyCustomers.contains(customerId)) {
+                    // The basket is the same as the one in the database
+                    remove(shard, customerId);
+                }
+            }
+            shard.writing.addAll(copies.keySet());
+        }
+        if (copies.isEmpty()) {
+            return;
+        }
+
+        var savedBaskets = saveCopies(copies);
+        synchronized (shard) {
+            if (Objects.nonNull(savedBaskets)) {
+                for (var savedBasket : savedBaskets) {
+                    var customerId = savedBasket.getCustomerId();
+                    // A basket used while it was written stays in memory
+                    if (Objects.equals(shard.lastAccess.get(customerId), lastAccesses.get(customerId))) {
+                        remove(shard, customerId);
+                    } else {
+                        applyIdentifiers(savedBasket);
+                    }
+                }
+            }
+            shard.writing.removeAll(copies.keySet());
+            shard.notifyAll();
+        }
+    }
+
+    /**
+     * Writes copies of the open baskets in background
+     *
+     * @param copies The copies indexed by the customer identification
+     * @return Returns the written baskets or null if they could not be written
+     */
+    private List<Basket> saveCopies(Map<String, Basket> copies) {
+        try {
+            return save(new ArrayList<>(copies.values()));
+        } catch (RuntimeException exception) {
+            // The baskets stay in memory and are written in the next attempt
+            LOG.warnf(exception, "Could not write %d open baskets, they will be written in the next attempt", copies.size());
+            return null;
+        }
+    }
+
+    /**
+     * Copies the identifications and versions generated by the database to the basket kept in memory, so its next
+     * write updates the same rows. The shard must be locked by the caller
+     *
+     * @param savedBasket The written copy of the basket
+     */
+    private void applyIdentifiers(Basket savedBasket) {
+        var basket = getShard(savedBasket.getCustomerId()).baskets.get(savedBasket.getCustomerId());
+        if (Objects.isNull(basket)) {
+            return;
+        }
+
+        basket.setId(savedBasket.getId());
+        basket.setVersion(savedBasket.getVersion());
+        for (var savedItem : savedBasket.getItems()) {
+            basket.findItem(savedItem.getProductId()).ifPresent(item -> {
+                item.setId(savedItem.getId());
+                item.setVersion(savedItem.getVersion());
+            });
+        }
+        for (var savedCombo : savedBasket.getCombos()) {
+            basket.getCombos()
+                    .stream()
+                    .filter(basketCombo -> Objects.equals(basketCombo.getCombo().getId(), savedCombo.getCombo().getId()))
+                    .findFirst()
+                    .ifPresent(basketCombo -> basketCombo.setId(savedCombo.getId()));
+        }
+    }
+
+    /**
+     * Writes the baskets to the database in a single transaction
+     *
+     * @param baskets The baskets to be written
+     * @return Returns the written baskets
+     */
+    @Transactional
+    List<Basket> save(List<Basket> baskets) {
+        var entityManager = basketRepository.getEntityManager();
+        var savedBaskets = baskets.stream()
+                .map(entityManager::merge)
+                .collect(Collectors.toList());
+        entityManager.flush();
+
+        return savedBaskets;
+    }
+
+    /**
+     * Get the basket kept in memory, loading it from the database if needed. The shard must be locked by the caller
+     *
+     * @param shard The shard of the customer
+     * @param customerId The customer identification
+     * @return Returns the basket or an empty {@link Optional}
+     */
+    private Optional<Basket> getOrLoad(Shard shard, String customerId) {
+        var basket = shard.baskets.get(customerId);
+        if (Objects.nonNull(basket)) {
+            shard.lastAccess.put(customerId, System.nanoTime());
+            return Optional.of(basket);
+        }
+
+        var loadedBasket = load(customerId);
+        loadedBasket.ifPresent(found -> {
+            put(shard, customerId, found);
+            // A basket written when it left memory keeps the sequence of its last journal event
+            if (Objects.nonNull(found.getJournalSequence())) {
+                shard.lastSequences.put(customerId, found.getJournalSequence());
+            }
+        });
+
+        return loadedBasket;
+    }
+
+    /**
+     * Loads the open basket of the customer from the database, with its items and combos
+     *
+     * @param customerId The customer identification
+     * @return Returns the basket or an empty {@link Optional}
+     */
+    @Transactional
+    Optional<Basket> load(String customerId) {
+        var basket = basketRepository.findOpenBasket(customerId);
+        basket.ifPresent(basketPricing::ensurePriced);
+
+        return basket;
+    }
+
+    /**
+     * Get the shard of the customer
+     *
+     * @param customerId The customer identification
+     * @return Returns the shard
+     */
+    private Shard getShard(String customerId) {
+        return shards[Math.floorMod(customerId.hashCode(), shards.length)];
+    }
+
+    /**
+     * Creates a copy of the basket, so it can be read while the one in memory keeps changing
+     *
+     * @param basket The basket to be copied
+     * @return Returns the copy
+     */
+    private Basket copyOf(Basket basket) {
+        var copy = Basket.builder()
+                .id(basket.getId())
+                .version(basket.getVersion())
+                .customerId(basket.getCustomerId())
+                .isOpen(basket.isOpen())
+                .openCustomerId(basket.getOpenCustomerId())
+                .rawValue(basket.getRawValue())
+                .discount(basket.getDiscount())
+                .total(basket.getTotal())
+                .journalSequence(basket.getJournalSequence())
+                .items(new ArrayList<>())
+                .combos(new ArrayList<>())
+                .build();
+
+        for (var item : basket.getItems()) {
+            copy.addItem(BasketItem.builder()
+                    .id(item.getId())
+                    .version(item.getVersion())
+                    .basket(copy)
+                    .productId(item.getProductId())
+                    .productName(item.getProductName())
+                    .unitPrice(item.getUnitPrice())
+                    .amount(item.getAmount())
+                    .promotion(item.getPromotion())
+                    .build());
+        }
+        for (var basketCombo : basket.getCombos()) {
+            copy.getCombos().add(BasketCombo.builder()
+                    .id(basketCombo.getId())
+                    .basket(copy)
+                    .combo(basketCombo.getCombo())
+                    .times(basketCombo.getTimes())
+                    .discount(basketCombo.getDiscount())
+                    .build());
+        }
+
+        return copy;
+    }
+
+    /**
+     * A part of the store, holding the baskets of some customers
+     */
+    private static class Shard {
+
+        /**
+         * The open baskets indexed by the customer identification
+         */
+        private final Map<String, Basket> baskets = new HashMap<>();
+
+        /**
+         * The customers whose baskets were changed after the last write
+         */
+        private final Set<String> dirtyCustomers = new HashSet<>();
+
+        /**
+         * Sequence of the last journal event applied to each basket
+         */
+        private final Map<String, Long> lastSequences = new HashMap<>();
+
+        /**
+         * The time each basket was last used, from {@link System#nanoTime()}
+         */
+        private final Map<String, Long> lastAccess = new HashMap<>();
+
+        /**
+         * The customers whose baskets are being written in background, without holding the shard
+         */
+        private final Set<String> writing = new HashSet<>();
+
+        /**
+         * The new baskets whose first additions are waiting for the journal, not visible until they are written
+         */
+        private final Map<String, Basket> creating = new HashMap<>();
+
+        /**
+         * The additions of each customer appended to the journal and not applied yet
+         */
+        private final Map<String, List<Map<Product, BigInteger>>> pendingAdditions = new HashMap<>();
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package br.zapparolli.service;
+
+import br.zapparolli.exception.QikServeException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the product catalog into the cache at startup and keeps it up to date
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class ProductCatalogLoader {
+
+    private static final Logger LOG = Logger.getLogger(ProductCatalogLoader.class);
+
+    @Inject
+    ProductService productService;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    /**
+     * Indicates if the catalog should be loaded
+     */
+    @ConfigProperty(name = "qikserve.product-catalog.enabled", defaultValue = "false")
+    boolean enabled;
+
+    /**
+     * Number of products in the last loaded catalog
+     */
+    final AtomicInteger catalogSize = new AtomicInteger();
+
+    /**
+     * Loads the catalog before the application starts accepting requests
+     *
+     * @param event The startup event
+     */
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        meterRegistry.gauge("products.catalog.size", catalogSize);
+
+        var start = System.nanoTime();
+        if (load()) {
+            LOG.infof("Product catalog warmed up with %d products in %d ms",
+                    catalogSize.get(), (System.nanoTime() - start) / 1_000_000);
+        }
+
+        if (catalogSize.get() > productService.getCacheMaxSize()) {
+            LOG.warnf("The catalog has %d products but the cache holds only %d, consider increasing qikserve.product-cache.max-size",
+                    catalogSize.get(), productService.getCacheMaxSize());
+        }
+    }
+
+    /**
+     * Reloads the catalog periodically, applying changes made in the API
+     */
+    @Scheduled(every = "{qikserve.product-catalog.reconcile-every}", delayed = "{qikserve.product-catalog.reconcile-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void reconcile() {
+        if (enabled && load()) {
+            LOG.debugf("Product catalog reconciled with %d products", catalogSize.get());
+        }
+    }
+
+    /**
+     * Loads the catalog, keeping the current cache if the API is unavailable
+     *
+     * @return Returns true if the catalog was loaded
+     */
+    private boolean load() {
+        try {
+            catalogSize.set(productService.loadCatalog());
+            return true;
+        } catch (QikServeException exception) {
+            LOG.warnf("Could not load the product catalog: %s", exception.getMessage());
+            return false;
+        }
+    }
+
+}
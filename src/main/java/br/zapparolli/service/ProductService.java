@@ -4,13 +4,45 @@ import br.zapparolli.exception.ErrorMessage;
 import br.zapparolli.exception.QikServeException;
 import br.zapparolli.model.Product;
 import br.zapparolli.resource.client.ProductsRestClient;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service for getting product data
@@ -24,29 +56,533 @@ public class ProductService {
     @RestClient
     ProductsRestClient productsRestClient;
 
+    @Inject
+    MeterRegistry meterRegistry;
 
     /**
-     * Get the price of the product from the API
+     * Time that a product stays in the cache after being loaded
+     */
+    @ConfigProperty(name = "qikserve.product-cache.ttl", defaultValue = "PT10M")
+    Duration cacheTtl;
+
+    /**
+     * Time after which a cached product is reloaded in background on the next access
+     */
+    @ConfigProperty(name = "qikserve.product-cache.refresh-after", defaultValue = "PT5M")
+    Duration cacheRefreshAfter;
+
+    /**
+     * Maximum number of products kept in the cache
+     */
+    @ConfigProperty(name = "qikserve.product-cache.max-size", defaultValue = "10000")
+    long cacheMaxSize;
+
+    /**
+     * Time that the last known data of a product can be served when the API is unavailable
+     */
+    @ConfigProperty(name = "qikserve.product-cache.stale-window", defaultValue = "PT1H")
+    Duration staleWindow;
+
+    /**
+     * Time that a product not found in the API is remembered as missing
+     */
+    @ConfigProperty(name = "qikserve.product-cache.not-found-ttl", defaultValue = "PT30S")
+    Duration notFoundTtl;
+
+    /**
+     * Maximum number of products remembered as missing
+     */
+    @ConfigProperty(name = "qikserve.product-cache.not-found-max-size", defaultValue = "10000")
+    long notFoundMaxSize;
+
+    /**
+     * Number of consecutive API failures that opens the circuit
+     */
+    @ConfigProperty(name = "qikserve.products.circuit-breaker.failure-threshold", defaultValue = "5")
+    int failureThreshold;
+
+    /**
+     * Time the circuit stays open before a new request is tried
+     */
+    @ConfigProperty(name = "qikserve.products.circuit-breaker.open-duration", defaultValue = "PT10S")
+    Duration openDuration;
+
+    /**
+     * Maximum number of concurrent requests to the API when resolving several products
+     */
+    @ConfigProperty(name = "qikserve.products.fan-out", defaultValue = "8")
+    int fanOut;
+
+    /**
+     * Maximum time to wait for a batch of products to be resolved
+     */
+    @ConfigProperty(name = "qikserve.products.batch-timeout", defaultValue = "PT2S")
+    Duration batchTimeout;
+
+    /**
+     * Local cache of the products loaded from the API
+     */
+    LoadingCache<String, Product> productCache;
+
+    /**
+     * Last known data of the products, used as fallback when the API is unavailable
+     */
+    Cache<String, Product> lastKnownProducts;
+
+    /**
+     * Identification of the products recently not found in the API
+     */
+    Cache<String, Boolean> notFoundProducts;
+
+    /**
+     * Stops calling the API while it's failing
+     */
+    CircuitBreaker circuitBreaker;
+
+    /**
+     * Executor used to resolve several products concurrently, bounded by the fan-out
+     */
+    ExecutorService lookupExecutor;
+
+    /**
+     * Requests to the API currently in progress, shared by concurrent lookups of the same product
+     */
+    final Map<String, CompletableFuture<Product>> inFlightLookups = new ConcurrentHashMap<>();
+
+    /**
+     * Counts the lookups that actually reached the API
+     */
+    Counter remoteLookups;
+
+    /**
+     * Counts the lookups that waited for a request already in progress
+     */
+    Counter coalescedLookups;
+
+    /**
+     * Counts the lookups answered with the last known data because the API is unavailable
+     */
+    Counter staleLookups;
+
+    /**
+     * Times the product requests answered by the API
+     */
+    Timer productRequests;
+
+    /**
+     * Times the product requests answered as not found
+     */
+    Timer notFoundProductRequests;
+
+    /**
+     * Times the product requests that failed
+     */
+    Timer failedProductRequests;
+
+    /**
+     * Times the catalog requests answered by the API
+     */
+    Timer catalogRequests;
+
+    /**
+     * Times the catalog requests that failed
+     */
+    Timer failedCatalogRequests;
+
+    /**
+     * Builds the product cache and registers its metrics
+     */
+    @PostConstruct
+    void initCache() {
+        productCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                // Reloads hot entries before they expire, serving the old value in the meantime
+                .refreshAfterWrite(cacheRefreshAfter)
+                .recordStats()
+                .build(this::fetchProduct);
+
+        lastKnownProducts = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(staleWindow)
+                .build();
+        notFoundProducts = Caffeine.newBuilder()
+                .maximumSize(notFoundMaxSize)
+                .expireAfterWrite(notFoundTtl)
+                .recordStats()
+                .build();
+        circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+
+        // Exposes hit, miss and eviction counters
+        CaffeineCacheMetrics.monitor(meterRegistry, productCache, "products");
+        CaffeineCacheMetrics.monitor(meterRegistry, notFoundProducts, "products-not-found");
+        meterRegistry.gauge("products.circuit.open", circuitBreaker,
+                breaker -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        remoteLookups = Counter.builder("products.lookups")
+                .tag("result", "remote")
+                .description("Product lookups that sent a request to the API")
+                .register(meterRegistry);
+        coalescedLookups = Counter.builder("products.lookups")
+                .tag("result", "coalesced")
+                .description("Product lookups that shared a request already in progress")
+                .register(meterRegistry);
+        staleLookups = Counter.builder("products.lookups")
+                .tag("result", "stale")
+                .description("Product lookups answered with the last known data while the API is unavailable")
+                .register(meterRegistry);
+        productRequests = apiTimer("product", "success");
+        notFoundProductRequests = apiTimer("product", "not-found");
+        failedProductRequests = apiTimer("product", "error");
+        catalogRequests = apiTimer("catalog", "success");
+        failedCatalogRequests = apiTimer("catalog", "error");
+        meterRegistry.gaugeMapSize("products.api.in.flight", Tags.empty(), inFlightLookups);
+
+        var threadCount = new AtomicInteger();
+        lookupExecutor = Executors.newFixedThreadPool(fanOut, runnable -> {
+            var thread = new Thread(runnable, "products-lookup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the lookup threads
+     */
+    @PreDestroy
+    void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+    /**
+     * Get the product data, from the cache if available or from the API otherwise
      *
      * @param productId The product identification
      * @throws QikServeException Throws an exception if there is any error with the API
      * @return Returns the product data
      */
     public Product findProduct(String productId) {
+        var cached = productCache.getIfPresent(productId);
+        if (!Objects.isNull(cached)) {
+            return cached;
+        }
+
+        return awaitLookup(coalesceLookup(productId, this::fetchProductBlocking));
+    }
+
+    /**
+     * Get the product data without blocking the caller thread, from the cache if available or from the API otherwise
+     *
+     * @param productId The product identification
+     * @return Returns the product data or a failure with a {@link QikServeException}
+     */
+    public Uni<Product> findProductAsync(String productId) {
+        var cached = productCache.getIfPresent(productId);
+        if (!Objects.isNull(cached)) {
+            return Uni.createFrom().item(cached);
+        }
+
+        return Uni.createFrom().completionStage(() -> coalesceLookup(productId, this::fetchProductAsync));
+    }
+
+    /**
+     * Get the product from the API, joining the request in progress for the same product if there is one.
+     * Every waiter receives the same result, including a not found error.
+     *
+     * @param productId The product identification
+     * @param request The function that sends the request to the API
+     * @return Returns the lookup, completed with the product or with a {@link QikServeException}
+     */
+    private CompletableFuture<Product> coalesceLookup(String productId, Function<String, CompletionStage<Product>> request) {
+        // Answers without calling the API if the product was recently not found
+        if (!Objects.isNull(notFoundProducts.getIfPresent(productId))) {
+            return CompletableFuture.failedFuture(new QikServeException(ErrorMessage.ERROR_PRODUCT_NOT_FOUND));
+        }
+
+        var lookup = new CompletableFuture<Product>();
+        var inFlight = inFlightLookups.putIfAbsent(productId, lookup);
+
+        // Joins the request already in progress
+        if (!Objects.isNull(inFlight)) {
+            coalescedLookups.increment();
+            return inFlight;
+        }
+
+        // Sends the request and publishes the result to the waiters
+        remoteLookups.increment();
+        request.apply(productId).whenComplete((product, error) -> {
+            if (Objects.isNull(error)) {
+                productCache.put(productId, product);
+            }
+            inFlightLookups.remove(productId, lookup);
+
+            if (Objects.isNull(error)) {
+                lookup.complete(product);
+            } else {
+                completeWithError(productId, lookup, toProductException(error));
+            }
+        });
+
+        return lookup;
+    }
+
+    /**
+     * Completes a failed lookup, remembering the product if it was not found
+     *
+     * @param productId The product identification
+     * @param lookup The lookup to be completed
+     * @param exception The error of the request
+     */
+    private void completeWithError(String productId, CompletableFuture<Product> lookup, QikServeException exception) {
+        if (exception.getErrorMessage() == ErrorMessage.ERROR_PRODUCT_NOT_FOUND) {
+            notFoundProducts.put(productId, Boolean.TRUE);
+        }
+
+        completeWithFallback(productId, lookup, exception);
+    }
+
+    /**
+     * Completes a failed lookup with the last known data of the product, if the API is unavailable and there
+     * is data recent enough. Otherwise, the lookup fails with the given exception.
+     *
+     * @param productId The product identification
+     * @param lookup The lookup to be completed
+     * @param exception The error of the request
+     */
+    private void completeWithFallback(String productId, CompletableFuture<Product> lookup, QikServeException exception) {
+        if (exception.getErrorMessage() == ErrorMessage.ERROR_PRODUCT_API) {
+            var lastKnown = lastKnownProducts.getIfPresent(productId);
+            if (!Objects.isNull(lastKnown)) {
+                staleLookups.increment();
+                lookup.complete(lastKnown);
+                return;
+            }
+        }
+
+        lookup.completeExceptionally(exception);
+    }
+
+    /**
+     * Waits for the result of a lookup
+     *
+     * @param lookup The lookup in progress
+     * @throws QikServeException Throws the same exception of the lookup
+     * @return Returns the product data
+     */
+    private Product awaitLookup(CompletableFuture<Product> lookup) {
         try {
-            // Searches the product in the API
-            return productsRestClient.getProduct(productId);
-        } catch (WebApplicationException exception) {
-            // Checks if the product is not found
-            if (exception.getResponse().getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
-                throw new QikServeException(ErrorMessage.ERROR_PRODUCT_NOT_FOUND);
+            return lookup.join();
+        } catch (CompletionException exception) {
+            throw toProductException(exception);
+        }
+    }
+
+    /**
+     * Get the data of several products at once, querying the API concurrently for the ones not cached
+     *
+     * @param productIds The products identification
+     * @throws QikServeException Throws an exception if any product could not be resolved in time
+     * @return Returns the products data indexed by its identification
+     */
+    public Map<String, Product> findProducts(Collection<String> productIds) {
+        return findProducts(productIds, (productId, exception) -> {
+            throw exception;
+        });
+    }
+
+    /**
+     * Get the data of several products at once, querying the API concurrently for the ones not cached.
+     * The products that could not be resolved in time are reported one by one, without failing the others
+     *
+     * @param productIds The products identification
+     * @param onError Receives the identification and the error of each product not resolved
+     * @return Returns the data of the resolved products indexed by its identification
+     */
+    public Map<String, Product> findProducts(Collection<String> productIds, BiConsumer<String, QikServeException> onError) {
+        // Starts the lookup of every distinct product
+        var lookups = new HashMap<String, CompletableFuture<Product>>();
+        for (var productId : new HashSet<>(productIds)) {
+            var cached = productCache.getIfPresent(productId);
+            lookups.put(productId, Objects.isNull(cached)
+                    ? CompletableFuture.supplyAsync(() -> awaitLookup(coalesceLookup(productId, this::fetchProductBlocking)), lookupExecutor)
+                    : CompletableFuture.completedFuture(cached));
+        }
+
+        // Waits for all lookups under a single deadline, the failures are checked one by one below
+        try {
+            CompletableFuture.allOf(lookups.values().toArray(CompletableFuture[]::new))
+                    .get(batchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException exception) {
+            // At least one lookup has failed
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new QikServeException(ErrorMessage.ERROR_PRODUCT_API);
+        } catch (TimeoutException exception) {
+            lookups.values().forEach(lookup -> lookup.cancel(true));
+        }
+
+        // All lookups are completed at this point
+        var products = new HashMap<String, Product>();
+        lookups.forEach((productId, lookup) -> {
+            try {
+                products.put(productId, lookup.join());
+            } catch (CancellationException exception) {
+                onError.accept(productId, new QikServeException(ErrorMessage.ERROR_PRODUCT_API));
+            } catch (CompletionException exception) {
+                onError.accept(productId, toProductException(exception));
             }
+        });
+        return products;
+    }
 
-            // Any other exceptions is treat as generic
+    /**
+     * Get the price of the product from the API
+     *
+     * @param productId The product identification
+     * @throws QikServeException Throws an exception if there is any error with the API
+     * @return Returns the product data
+     */
+    Product fetchProduct(String productId) {
+        // Fails fast while the API is unavailable
+        if (!circuitBreaker.allowRequest()) {
             throw new QikServeException(ErrorMessage.ERROR_PRODUCT_API);
+        }
+
+        var start = System.nanoTime();
+        try {
+            // Searches the product in the API
+            var product = productsRestClient.getProduct(productId);
+            productRequests.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            recordSuccess(product);
+            return product;
         } catch (Exception exception) {
-            throw new QikServeException(ErrorMessage.ERROR_PRODUCT_API);
+            throw recordProductFailure(exception, start);
+        }
+    }
+
+    /**
+     * Get the product from the API in the caller thread
+     *
+     * @param productId The product identification
+     * @return Returns a completed stage with the product data or the error
+     */
+    private CompletionStage<Product> fetchProductBlocking(String productId) {
+        try {
+            return CompletableFuture.completedFuture(fetchProduct(productId));
+        } catch (QikServeException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    /**
+     * Get the product from the API using the non-blocking client
+     *
+     * @param productId The product identification
+     * @return Returns the stage that will be completed with the product data
+     */
+    private CompletionStage<Product> fetchProductAsync(String productId) {
+        // Fails fast while the API is unavailable
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.failedFuture(new QikServeException(ErrorMessage.ERROR_PRODUCT_API));
+        }
+
+        var start = System.nanoTime();
+        CompletionStage<Product> request;
+        try {
+            request = productsRestClient.getProductAsync(productId);
+        } catch (Exception exception) {
+            request = CompletableFuture.failedFuture(exception);
+        }
+
+        return request.handle((product, error) -> {
+            if (!Objects.isNull(error)) {
+                throw recordProductFailure(error, start);
+            }
+            productRequests.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            recordSuccess(product);
+            return product;
+        });
+    }
+
+    /**
+     * Records a successful response of the API
+     *
+     * @param product The product returned
+     */
+    private void recordSuccess(Product product) {
+        circuitBreaker.onSuccess();
+        lastKnownProducts.put(product.getId(), product);
+    }
+
+    /**
+     * Records a failed response of the API. A not found product is a valid answer and doesn't count as failure.
+     *
+     * @param error The error thrown by the client
+     * @return Returns the exception with the related error message
+     */
+    private QikServeException recordFailure(Throwable error) {
+        var exception = toProductException(error);
+        if (exception.getErrorMessage() == ErrorMessage.ERROR_PRODUCT_NOT_FOUND) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure();
         }
+        return exception;
+    }
+
+    /**
+     * Records a failed response of a product request, with its time
+     *
+     * @param error The error thrown by the client
+     * @param start The time when the request was sent, from {@link System#nanoTime()}
+     * @return Returns the exception with the related error message
+     */
+    private QikServeException recordProductFailure(Throwable error, long start) {
+        var exception = recordFailure(error);
+        var timer = exception.getErrorMessage() == ErrorMessage.ERROR_PRODUCT_NOT_FOUND ? notFoundProductRequests : failedProductRequests;
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return exception;
+    }
+
+    /**
+     * Creates the timer of the requests sent to the API
+     *
+     * @param operation The operation of the API
+     * @param outcome The result of the requests
+     * @return Returns the registered timer
+     */
+    private Timer apiTimer(String operation, String outcome) {
+        return Timer.builder("products.api.requests")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .description("Requests sent to the products API")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Converts an error of the API to the corresponding exception
+     *
+     * @param error The error thrown by the client
+     * @return Returns the exception with the related error message
+     */
+    private QikServeException toProductException(Throwable error) {
+        // Unwraps the errors of asynchronous executions
+        var cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && !Objects.isNull(cause.getCause())) {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof QikServeException) {
+            return (QikServeException) cause;
+        }
+
+        // Checks if the product is not found
+        if (cause instanceof WebApplicationException
+                && ((WebApplicationException) cause).getResponse().getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+            return new QikServeException(ErrorMessage.ERROR_PRODUCT_NOT_FOUND);
+        }
+
+        // Any other exceptions is treat as generic
+        return new QikServeException(ErrorMessage.ERROR_PRODUCT_API);
     }
 
     /**
@@ -55,7 +591,76 @@ public class ProductService {
      * @return Returns the list of products
      */
     public List<Product> getProducts() {
-        return productsRestClient.listProducts();
+        var start = System.nanoTime();
+        try {
+            var products = productsRestClient.listProducts();
+            catalogRequests.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return products;
+        } catch (RuntimeException exception) {
+            failedCatalogRequests.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw exception;
+        }
+    }
+
+    /**
+     * Loads the whole catalog of the API into the cache, discarding cached products that are not in it anymore
+     *
+     * @throws QikServeException Throws an exception if there is any error with the API
+     * @return Returns the number of products in the catalog
+     */
+    public int loadCatalog() {
+        // Fails fast while the API is unavailable
+        if (!circuitBreaker.allowRequest()) {
+            throw new QikServeException(ErrorMessage.ERROR_PRODUCT_API);
+        }
+
+        List<Product> products;
+        var start = System.nanoTime();
+        try {
+            products = productsRestClient.listProducts();
+            catalogRequests.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess();
+        } catch (Exception exception) {
+            failedCatalogRequests.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw recordFailure(exception);
+        }
+
+        var catalog = products.stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity(), (first, second) -> second));
+        productCache.putAll(catalog);
+        lastKnownProducts.putAll(catalog);
+        notFoundProducts.invalidateAll(catalog.keySet());
+        productCache.asMap().keySet().retainAll(catalog.keySet());
+
+        return catalog.size();
+    }
+
+    /**
+     * Get the maximum number of products kept in the cache
+     *
+     * @return Returns the configured size of the cache
+     */
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    /**
+     * Discards the cached data of a product, keeping the last known data as fallback
+     *
+     * @param productId The product identification
+     */
+    public void invalidate(String productId) {
+        productCache.invalidate(productId);
+    }
+
+    /**
+     * Discards all cached products, including the last known data, and closes the circuit
+     */
+    public void reset() {
+        productCache.invalidateAll();
+        lastKnownProducts.invalidateAll();
+        notFoundProducts.invalidateAll();
+        circuitBreaker.reset();
     }
 
 }
@@ -0,0 +1,125 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Promotion;
+import br.zapparolli.repository.PromotionRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the promotions by product, so they can be found without querying the database
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class PromotionIndex {
+
+    @Inject
+    PromotionRepository promotionRepository;
+
+    /**
+     * The promotion tiers indexed by the product identification
+     */
+    private volatile Map<String, PromotionTiers> promotions = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the replacement of the index and the promotions created while it's rebuilt
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The promotions created while the index is rebuilt, which the database read may have missed. Null when no
+     * rebuild is running
+     */
+    private List<Promotion> createdDuringRebuild;
+
+    /**
+     * Loads the index when the application starts
+     *
+     * @param event The startup event
+     */
+    void onStart(@Observes StartupEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Reloads all promotions from the database, applying the ones created by other instances
+     */
+    @Transactional
+    @Scheduled(every = "{qikserve.promotion-index.refresh-every}", delayed = "{qikserve.promotion-index.refresh-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public synchronized void rebuild() {
+        synchronized (lock) {
+            createdDuringRebuild = new ArrayList<>();
+        }
+
+        Map<String, PromotionTiers> rebuilt = promotionRepository.streamAll()
+                .collect(Collectors.groupingBy(Promotion::getProductId, ConcurrentHashMap::new,
+                        Collectors.collectingAndThen(Collectors.toList(), PromotionTiers::of)));
+
+        synchronized (lock) {
+            // The promotions committed during the read are applied again, replacing the same tier if already read
+            createdDuringRebuild.forEach(promotion -> add(rebuilt, promotion));
+            createdDuringRebuild = null;
+            promotions = rebuilt;
+        }
+    }
+
+    /**
+     * Adds a promotion to the index once the transaction that created it is committed
+     *
+     * @param promotion The created promotion
+     */
+    void onPromotionCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) Promotion promotion) {
+        synchronized (lock) {
+            add(promotions, promotion);
+            // A running rebuild replaces the index, so it must apply the promotion too
+            if (Objects.nonNull(createdDuringRebuild)) {
+                createdDuringRebuild.add(promotion);
+            }
+        }
+    }
+
+    /**
+     * Adds a promotion to the tiers of its product
+     *
+     * @param index The index to be changed
+     * @param promotion The promotion to be added
+     */
+    private static void add(Map<String, PromotionTiers> index, Promotion promotion) {
+        // The tiers are immutable, so readers always see a consistent set
+        index.compute(promotion.getProductId(), (productId, tiers) -> Objects.isNull(tiers)
+                ? PromotionTiers.of(List.of(promotion))
+                : tiers.with(promotion));
+    }
+
+    /**
+     * Find the best promotion tier for the given product that applies to the amount
+     *
+     * @param productId The product identification
+     * @param amount The amount of puchased products
+     * @return Returns the promotion or an empty {@link Optional}
+     */
+    public Optional<Promotion> find(String productId, BigInteger amount) {
+        var tiers = promotions.get(productId);
+        if (Objects.isNull(tiers)) {
+            return Optional.empty();
+        }
+
+        return tiers.find(amount);
+    }
+
+}
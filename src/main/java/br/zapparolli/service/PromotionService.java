@@ -5,8 +5,12 @@ import br.zapparolli.exception.ErrorMessage;
 import br.zapparolli.exception.QikServeException;
 import br.zapparolli.model.NewPromotion;
 import br.zapparolli.repository.PromotionRepository;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 import java.math.BigInteger;
@@ -28,6 +32,18 @@ public class PromotionService {
     @Inject
     ProductService productService;
 
+    @Inject
+    PromotionIndex promotionIndex;
+
+    @Inject
+    Event<Promotion> promotionCreated;
+
+    /**
+     * Indicates if the product data is queried without blocking a worker thread
+     */
+    @ConfigProperty(name = "qikserve.products.reactive", defaultValue = "false")
+    boolean reactive;
+
     /**
      * Create a new promotion
      *
@@ -41,10 +57,31 @@ public class PromotionService {
         var promotion = Promotion.newPromotion(newPromotion);
 
         promotionRepository.persist(promotion);
+        // Updates the index after the commit
+        promotionCreated.fire(promotion);
 
         return promotion;
     }
 
+    /**
+     * Create a new promotion without holding a worker thread while the product is queried.
+     * If the reactive mode is disabled, the blocking flow is executed in a worker thread.
+     *
+     * @param newPromotion The data of the new promotion
+     * @return Returns the inserted promotion
+     */
+    public Uni<Promotion> createPromotionAsync(NewPromotion newPromotion) {
+        if (!reactive) {
+            return Uni.createFrom().item(() -> createPromotion(newPromotion))
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        }
+
+        // Loads the product in the cache, so the validation doesn't block on the API
+        return productService.findProductAsync(newPromotion.getProductId())
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .map(product -> createPromotion(newPromotion));
+    }
+
     /**
      * Get all promotions
      *
@@ -77,7 +114,7 @@ public class PromotionService {
      * @return Returns the promotion or an empty {@link Optional}
      */
     public Optional<Promotion> getPromotion(String productId, BigInteger amount) {
-        return promotionRepository.findByProductAmount(productId, amount);
+        return promotionIndex.find(productId, amount);
     }
 
     /**
@@ -103,8 +140,8 @@ public class PromotionService {
             throw new QikServeException(ErrorMessage.ERROR_PROMOTION_GREATER_DISCOUNT);
         }
 
-        // Checks if there is a promotion for the same product
-        var existentPromotion = promotionRepository.findByProduct(newPromotion.getProductId());
+        // Checks if there is a promotion for the same product and tier
+        var existentPromotion = promotionRepository.findByProductMinAmount(newPromotion.getProductId(), newPromotion.getMinAmount());
         if (existentPromotion.isPresent()) {
             throw new QikServeException(ErrorMessage.ERROR_PROMOTION_ALREADY_EXISTS);
         }
@@ -0,0 +1,119 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Promotion;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Immutable set of quantity tiers of the promotions of a single product.
+ * The tiers are sorted by minimum amount, so the tier for an amount is found by binary search.
+ *
+ * @author lczapparolli
+ */
+public final class PromotionTiers {
+
+    /**
+     * Minimum amounts of the tiers, in ascending order
+     */
+    private final long[] minAmounts;
+
+    /**
+     * For each tier, the promotion with the greatest discount among it and the lower tiers
+     */
+    private final Promotion[] bestPromotions;
+
+    /**
+     * The promotions of the tiers, in the same order of the amounts
+     */
+    private final Promotion[] promotions;
+
+    /**
+     * Creates the tiers from the given promotions
+     *
+     * @param promotions The promotions of the same product
+     */
+    private PromotionTiers(Promotion[] promotions) {
+        Arrays.sort(promotions, Comparator.comparing(Promotion::getMinAmount));
+        this.promotions = promotions;
+        this.minAmounts = new long[promotions.length];
+        this.bestPromotions = new Promotion[promotions.length];
+
+        Promotion best = null;
+        for (var i = 0; i < promotions.length; i++) {
+            minAmounts[i] = toLong(promotions[i].getMinAmount());
+            // A greater amount never gets a smaller discount than a lower tier
+            if (Objects.isNull(best) || promotions[i].getUnitDiscount().compareTo(best.getUnitDiscount()) >= 0) {
+                best = promotions[i];
+            }
+            bestPromotions[i] = best;
+        }
+    }
+
+    /**
+     * Creates the tiers from the given promotions
+     *
+     * @param promotions The promotions of the same product
+     * @return Returns the created tiers
+     */
+    public static PromotionTiers of(Collection<Promotion> promotions) {
+        return new PromotionTiers(promotions.toArray(Promotion[]::new));
+    }
+
+    /**
+     * Creates new tiers with the given promotion added, replacing the tier with the same minimum amount
+     *
+     * @param promotion The promotion to be added
+     * @return Returns the created tiers, the current object is not changed
+     */
+    public PromotionTiers with(Promotion promotion) {
+        var updated = new ArrayList<Promotion>(promotions.length + 1);
+        for (var existent : promotions) {
+            if (existent.getMinAmount().compareTo(promotion.getMinAmount()) != 0) {
+                updated.add(existent);
+            }
+        }
+        updated.add(promotion);
+
+        return of(updated);
+    }
+
+    /**
+     * Find the promotion that applies to the given amount
+     *
+     * @param amount The amount of purchased products
+     * @return Returns the promotion of the highest tier reached or an empty {@link Optional}
+     */
+    public Optional<Promotion> find(BigInteger amount) {
+        var index = Arrays.binarySearch(minAmounts, toLong(amount));
+        // When not found, the binary search returns (-insertion point - 1)
+        var tier = index >= 0 ? index : -index - 2;
+
+        return tier < 0 ? Optional.empty() : Optional.of(bestPromotions[tier]);
+    }
+
+    /**
+     * Get the number of tiers
+     *
+     * @return Returns the number of tiers
+     */
+    public int size() {
+        return promotions.length;
+    }
+
+    /**
+     * Converts an amount to long, limiting it to the maximum value
+     *
+     * @param amount The amount
+     * @return Returns the amount as long
+     */
+    private static long toLong(BigInteger amount) {
+        return amount.bitLength() < Long.SIZE ? amount.longValue() : Long.MAX_VALUE;
+    }
+
+}
@@ -0,0 +1,83 @@
+package br.zapparolli.benchmark;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.service.BasketService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding a unit of a product to an open basket: the validation, the lookup of the line, the promotion
+ * resolution and the re-pricing of the line. The products API and the repository are stubs
+ *
+ * @author lczapparolli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasketAddItemBenchmark {
+
+    /**
+     * Number of lines in the basket
+     */
+    @Param({ "1", "50", "1000" })
+    int lines;
+
+    /**
+     * Number of promotion tiers of each product
+     */
+    @Param({ "0", "1", "10" })
+    int promotions;
+
+    private BasketService basketService;
+
+    /**
+     * The additions, one per line of the basket, done in turns
+     */
+    private NewBasketItem[] newBasketItems;
+
+    private int next;
+
+    /**
+     * Creates the basket and the service that changes it
+     */
+    @Setup
+    public void setup() {
+        var products = BenchmarkFixtures.products(lines);
+        var basketPricing = BenchmarkFixtures.basketPricing(BenchmarkFixtures.promotionService(BenchmarkFixtures.promotions(products, promotions)));
+        basketService = BenchmarkFixtures.basketService(BenchmarkFixtures.basket(products, basketPricing), products, basketPricing);
+        newBasketItems = products.stream()
+                .map(product -> NewBasketItem.builder()
+                        .customerId("BENCHMARK")
+                        .productId(product.getId())
+                        .amount(BigInteger.ONE)
+                        .build())
+                .toArray(NewBasketItem[]::new);
+    }
+
+    /**
+     * Adds a unit of the product of the next line
+     *
+     * @return Returns the changed basket
+     */
+    @Benchmark
+    public Basket addItem() {
+        return basketService.addItem(newBasketItems[(next++ & Integer.MAX_VALUE) % newBasketItems.length]);
+    }
+
+}
@@ -0,0 +1,71 @@
+package br.zapparolli.benchmark;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.model.InsertedBasket;
+import br.zapparolli.service.BasketConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the render of a basket, as returned by the API, for baskets of different sizes and with different numbers
+ * of promotion tiers per product
+ *
+ * @author lczapparolli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasketConverterBenchmark {
+
+    /**
+     * Number of lines in the basket
+     */
+    @Param({ "1", "50", "1000" })
+    int lines;
+
+    /**
+     * Number of promotion tiers of each product
+     */
+    @Param({ "0", "1", "10" })
+    int promotions;
+
+    private Basket basket;
+
+    private BasketConverter basketConverter;
+
+    /**
+     * Creates the priced basket and the converter
+     */
+    @Setup
+    public void setup() {
+        var products = BenchmarkFixtures.products(lines);
+        var basketPricing = BenchmarkFixtures.basketPricing(BenchmarkFixtures.promotionService(BenchmarkFixtures.promotions(products, promotions)));
+        basket = BenchmarkFixtures.basket(products, basketPricing);
+        basketConverter = BenchmarkFixtures.basketConverter();
+    }
+
+    /**
+     * Renders the basket
+     *
+     * @return Returns the rendered basket
+     */
+    @Benchmark
+    public InsertedBasket convertBasket() {
+        return basketConverter.convertBasket(basket);
+    }
+
+}
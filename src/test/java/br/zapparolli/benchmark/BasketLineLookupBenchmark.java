@@ -0,0 +1,89 @@
+package br.zapparolli.benchmark;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketItem;
+import br.zapparolli.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the line of a product through the basket index with scanning the items, as done before the index.
+ * The indexed lookup should take the same time for any number of lines, while the scan grows with it
+ *
+ * @author lczapparolli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasketLineLookupBenchmark {
+
+    /**
+     * Number of lines in the basket
+     */
+    @Param({ "1", "50", "1000" })
+    int lines;
+
+    private Basket basket;
+
+    /**
+     * The product of the last line, the worst case for the scan
+     */
+    private String productId;
+
+    /**
+     * Creates a basket with one line per product
+     */
+    @Setup
+    public void setup() {
+        basket = Basket.newBasket("BENCHMARK");
+        for (var index = 0; index < lines; index++) {
+            BasketItem.newBasketItem(basket, Product.builder()
+                    .id("PRODUCT_" + index)
+                    .name("Product " + index)
+                    .price(BigInteger.valueOf(100 + index))
+                    .build())
+                    .setAmount(BigInteger.ONE);
+        }
+        productId = "PRODUCT_" + (lines - 1);
+    }
+
+    /**
+     * Finds the line through the index of the basket
+     *
+     * @return Returns the line found
+     */
+    @Benchmark
+    public BasketItem indexedLookup() {
+        return basket.findItem(productId).orElseThrow();
+    }
+
+    /**
+     * Finds the line scanning the items of the basket
+     *
+     * @return Returns the line found
+     */
+    @Benchmark
+    public BasketItem scanLookup() {
+        return basket.getItems()
+                .stream()
+                .filter(item -> item.getProductId().equals(productId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+}
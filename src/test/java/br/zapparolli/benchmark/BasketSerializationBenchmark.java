@@ -0,0 +1,71 @@
+package br.zapparolli.benchmark;
+
+import br.zapparolli.model.InsertedBasket;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON serialization of a rendered basket, the last step of every basket response
+ *
+ * @author lczapparolli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasketSerializationBenchmark {
+
+    /**
+     * Number of lines in the basket
+     */
+    @Param({ "1", "50", "1000" })
+    int lines;
+
+    /**
+     * Number of promotion tiers of each product
+     */
+    @Param({ "0", "1", "10" })
+    int promotions;
+
+    private InsertedBasket insertedBasket;
+
+    private ObjectMapper objectMapper;
+
+    /**
+     * Renders the basket to be serialized
+     */
+    @Setup
+    public void setup() {
+        var products = BenchmarkFixtures.products(lines);
+        var basketPricing = BenchmarkFixtures.basketPricing(BenchmarkFixtures.promotionService(BenchmarkFixtures.promotions(products, promotions)));
+        insertedBasket = BenchmarkFixtures.basketConverter().convertBasket(BenchmarkFixtures.basket(products, basketPricing));
+        objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Serializes the rendered basket
+     *
+     * @throws JsonProcessingException Throws an exception if the basket can't be serialized
+     * @return Returns the JSON document
+     */
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(insertedBasket);
+    }
+
+}
@@ -0,0 +1,218 @@
+package br.zapparolli.benchmark;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.Promotion;
+import br.zapparolli.model.Product;
+import br.zapparolli.repository.BasketRepository;
+import br.zapparolli.repository.ComboRepository;
+import br.zapparolli.repository.PromotionRepository;
+import br.zapparolli.service.BasketConverter;
+import br.zapparolli.service.BasketPricing;
+import br.zapparolli.service.BasketService;
+import br.zapparolli.service.ComboEngine;
+import br.zapparolli.service.ComboIndex;
+import br.zapparolli.service.OpenBasketStore;
+import br.zapparolli.service.ProductService;
+import br.zapparolli.service.PromotionIndex;
+import br.zapparolli.service.PromotionService;
+import org.mockito.Mockito;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Utility class to build the services measured by the benchmarks without the application container. The products
+ * API and the repositories are replaced by stubs, so only the code of the services is measured
+ *
+ * @author lczapparolli
+ */
+public class BenchmarkFixtures {
+
+    /**
+     * Creates the data of a product
+     *
+     * @param index The number of the product
+     * @return Returns the product identified as PRODUCT_index
+     */
+    public static Product product(int index) {
+        return Product.builder()
+                .id("PRODUCT_" + index)
+                .name("Product " + index)
+                .price(BigInteger.valueOf(100 + index))
+                .build();
+    }
+
+    /**
+     * Creates the data of several products
+     *
+     * @param count The number of products
+     * @return Returns the products, from PRODUCT_0 to PRODUCT_count-1
+     */
+    public static List<Product> products(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(BenchmarkFixtures::product)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates the promotion tiers of each product. The tier N starts at 2N units and discounts N cents per unit
+     *
+     * @param products The products with promotions
+     * @param tiers The number of tiers of each product
+     * @return Returns the promotions of all products
+     */
+    public static List<Promotion> promotions(List<Product> products, int tiers) {
+        var promotions = new ArrayList<Promotion>();
+        for (var product : products) {
+            for (var tier = 1; tier <= tiers; tier++) {
+                promotions.add(Promotion.builder()
+                        .id((long) promotions.size() + 1)
+                        .productId(product.getId())
+                        .minAmount(BigInteger.valueOf(2L * tier))
+                        .unitDiscount(BigInteger.valueOf(tier))
+                        .build());
+            }
+        }
+        return promotions;
+    }
+
+    /**
+     * Creates the promotion service with its index loaded from a stub repository
+     *
+     * @param promotions The promotions returned by the repository
+     * @return Returns the service
+     */
+    public static PromotionService promotionService(List<Promotion> promotions) {
+        var promotionRepository = stub(PromotionRepository.class);
+        Mockito.when(promotionRepository.streamAll()).thenAnswer(invocation -> promotions.stream());
+
+        var promotionIndex = new PromotionIndex();
+        inject(promotionIndex, "promotionRepository", promotionRepository);
+        promotionIndex.rebuild();
+
+        var promotionService = new PromotionService();
+        inject(promotionService, "promotionIndex", promotionIndex);
+        return promotionService;
+    }
+
+    /**
+     * Creates the basket pricing, without combos
+     *
+     * @param promotionService The service that resolves the promotions
+     * @return Returns the pricing
+     */
+    public static BasketPricing basketPricing(PromotionService promotionService) {
+        var comboIndex = new ComboIndex();
+        inject(comboIndex, "comboRepository", stub(ComboRepository.class));
+        comboIndex.rebuild();
+
+        var comboEngine = new ComboEngine();
+        inject(comboEngine, "comboIndex", comboIndex);
+
+        var basketPricing = new BasketPricing();
+        inject(basketPricing, "promotionService", promotionService);
+        inject(basketPricing, "comboEngine", comboEngine);
+        return basketPricing;
+    }
+
+    /**
+     * Creates a priced basket with one line per product. The amounts go from 1 to 5 units, so the lines reach
+     * different promotion tiers
+     *
+     * @param products The products of the lines
+     * @param basketPricing The pricing used to add the lines
+     * @return Returns the basket
+     */
+    public static Basket basket(List<Product> products, BasketPricing basketPricing) {
+        var basket = Basket.newBasket("BENCHMARK");
+        for (var index = 0; index < products.size(); index++) {
+            basketPricing.addProduct(basket, products.get(index), BigInteger.valueOf(1 + index % 5));
+        }
+        return basket;
+    }
+
+    /**
+     * Creates the basket converter. The names are stored in the lines, so the stub products API is never queried
+     *
+     * @return Returns the converter
+     */
+    public static BasketConverter basketConverter() {
+        var basketConverter = new BasketConverter();
+        inject(basketConverter, "productService", stub(ProductService.class));
+        return basketConverter;
+    }
+
+    /**
+     * Creates the basket service over a single basket, kept in memory by a stub repository. The stubs of the hot path
+     * are plain classes, so the lookups of the mocks are not measured
+     *
+     * @param basket The open basket of every customer
+     * @param products The products returned by the stub products API
+     * @param basketPricing The pricing used to add the items
+     * @return Returns the service
+     */
+    public static BasketService basketService(Basket basket, List<Product> products, BasketPricing basketPricing) {
+        var productsById = products.stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        var productService = new ProductService() {
+            @Override
+            public Product findProduct(String productId) {
+                return productsById.get(productId);
+            }
+        };
+
+        var basketRepository = new BasketRepository() {
+            @Override
+            public Optional<Basket> findOpenBasket(String customerId) {
+                return Optional.of(basket);
+            }
+
+            @Override
+            public void persistAndFlush(Basket entity) {
+                // The basket is only kept in memory
+            }
+        };
+
+        var basketService = new BasketService();
+        inject(basketService, "productService", productService);
+        inject(basketService, "basketRepository", basketRepository);
+        inject(basketService, "basketPricing", basketPricing);
+        // The store is disabled, so the additions go through the repository
+        inject(basketService, "openBasketStore", new OpenBasketStore());
+        return basketService;
+    }
+
+    /**
+     * Creates a stub that does not record its invocations, for the dependencies used only in the setup
+     *
+     * @param type The class to be stubbed
+     * @param <T> The type of the stub
+     * @return Returns the stub
+     */
+    private static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    /**
+     * Sets a dependency that the container would inject
+     *
+     * @param target The object that receives the dependency
+     * @param fieldName The name of the injected field
+     * @param value The dependency
+     */
+    private static void inject(Object target, String fieldName, Object value) {
+        try {
+            var field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package br.zapparolli.benchmark;
+
+import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketItem;
+import br.zapparolli.entity.Promotion;
+import br.zapparolli.model.InsertedBasket;
+import br.zapparolli.model.Product;
+import br.zapparolli.service.BasketConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the values of a basket render calculated with {@link BigInteger}, as done before, with the calculation in
+ * cents with {@code long}. Run with {@code -prof gc} to compare the allocation per render
+ *
+ * @author lczapparolli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingArithmeticBenchmark {
+
+    /**
+     * Number of lines in the basket
+     */
+    @Param({ "1", "50", "1000" })
+    int lines;
+
+    private Basket basket;
+
+    private BasketConverter basketConverter;
+
+    /**
+     * Creates a basket with one line per product, with a promotion on every other line
+     */
+    @Setup
+    public void setup() {
+        basket = Basket.newBasket("BENCHMARK");
+        for (var index = 0; index < lines; index++) {
+            var basketItem = BasketItem.newBasketItem(basket, Product.builder()
+                    .id("PRODUCT_" + index)
+                    .name("Product " + index)
+                    .price(BigInteger.valueOf(100 + index))
+                    .build());
+            basketItem.setAmount(BigInteger.valueOf(1 + index % 5));
+            if (index % 2 == 0) {
+                basketItem.setPromotion(Promotion.builder()
+                        .productId(basketItem.getProductId())
+                        .minAmount(BigInteger.ONE)
+                        .unitDiscount(BigInteger.TEN)
+                        .build());
+            }
+        }
+        basket.setRawValue(basket.getItems().stream().map(BasketItem::getRawValue).reduce(BigInteger.ZERO, BigInteger::add));
+        basket.setDiscount(basket.getItems().stream().map(BasketItem::getDiscount).reduce(BigInteger.ZERO, BigInteger::add));
+        basket.setTotal(basket.getRawValue().subtract(basket.getDiscount()));
+
+        // The names are stored in the lines, so the products API is never queried
+        basketConverter = new BasketConverter();
+    }
+
+    /**
+     * Calculates the values of the lines and their sums with {@link BigInteger}, as the render did before
+     *
+     * @param blackhole Consumes the values calculated
+     */
+    @Benchmark
+    public void bigIntegerValues(Blackhole blackhole) {
+        var itemTotals = new ArrayList<BigInteger>(lines);
+        var rawValues = new ArrayList<BigInteger>(lines);
+        var discounts = new ArrayList<BigInteger>(lines);
+        for (var basketItem : basket.getItems()) {
+            var rawValue = basketItem.getAmount().multiply(basketItem.getUnitPrice());
+            var discount = Objects.isNull(basketItem.getPromotion()) ? BigInteger.ZERO
+                    : basketItem.getPromotion().getUnitDiscount().multiply(basketItem.getAmount());
+            rawValues.add(rawValue);
+            discounts.add(discount);
+            itemTotals.add(rawValue.subtract(discount));
+        }
+        blackhole.consume(itemTotals.stream().reduce(BigInteger.ZERO, BigInteger::add));
+        blackhole.consume(rawValues.stream().reduce(BigInteger.ZERO, BigInteger::add));
+        blackhole.consume(discounts.stream().reduce(BigInteger.ZERO, BigInteger::add));
+    }
+
+    /**
+     * Calculates the values of the lines and their sums in cents, with overflow checks
+     *
+     * @param blackhole Consumes the values calculated
+     */
+    @Benchmark
+    public void longValues(Blackhole blackhole) {
+        var total = 0L;
+        var rawValue = 0L;
+        var discount = 0L;
+        for (var basketItem : basket.getItems()) {
+            var itemRawValue = basketItem.getRawValueCents();
+            var itemDiscount = basketItem.getDiscountCents();
+            rawValue = Math.addExact(rawValue, itemRawValue);
+            discount = Math.addExact(discount, itemDiscount);
+            total = Math.addExact(total, Math.subtractExact(itemRawValue, itemDiscount));
+        }
+        blackhole.consume(total);
+        blackhole.consume(rawValue);
+        blackhole.consume(discount);
+    }
+
+    /**
+     * Renders the whole basket, as returned by the API
+     *
+     * @return Returns the rendered basket
+     */
+    @Benchmark
+    public InsertedBasket convertBasket() {
+        return basketConverter.convertBasket(basket);
+    }
+
+}
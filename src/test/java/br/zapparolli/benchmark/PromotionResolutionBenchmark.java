@@ -0,0 +1,86 @@
+package br.zapparolli.benchmark;
+
+import br.zapparolli.entity.Promotion;
+import br.zapparolli.model.Product;
+import br.zapparolli.service.PromotionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the promotion tier of a product for an amount, done on every change of a basket line
+ *
+ * @author lczapparolli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromotionResolutionBenchmark {
+
+    /**
+     * Number of products with promotions
+     */
+    @Param({ "10", "10000" })
+    int products;
+
+    /**
+     * Number of promotion tiers of each product
+     */
+    @Param({ "1", "10", "100" })
+    int promotions;
+
+    private PromotionService promotionService;
+
+    /**
+     * The product identifications, looked up in turns
+     */
+    private String[] productIds;
+
+    /**
+     * The amounts, going from below the first tier to above the last one
+     */
+    private BigInteger[] amounts;
+
+    private int next;
+
+    /**
+     * Creates the promotion service with the promotions of all products
+     */
+    @Setup
+    public void setup() {
+        var productList = BenchmarkFixtures.products(products);
+        promotionService = BenchmarkFixtures.promotionService(BenchmarkFixtures.promotions(productList, promotions));
+        productIds = productList.stream().map(Product::getId).toArray(String[]::new);
+        amounts = new BigInteger[2 * promotions + 2];
+        for (var index = 0; index < amounts.length; index++) {
+            amounts[index] = BigInteger.valueOf(index + 1L);
+        }
+    }
+
+    /**
+     * Finds the promotion of the next product and amount
+     *
+     * @return Returns the promotion found
+     */
+    @Benchmark
+    public Optional<Promotion> getPromotion() {
+        var index = next++ & Integer.MAX_VALUE;
+        return promotionService.getPromotion(productIds[index % productIds.length], amounts[index % amounts.length]);
+    }
+
+}
@@ -0,0 +1,62 @@
+package br.zapparolli.load;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test of the application against the local stand-in of the products API. It's only run by the
+ * {@code load-test} profile and is configured by system properties:
+ * <ul>
+ *     <li>{@code load.rate}: requests per second, 200 by default</li>
+ *     <li>{@code load.duration}: time measured, 30 seconds by default</li>
+ *     <li>{@code load.warmup}: time sending requests before measuring, 10 seconds by default</li>
+ *     <li>{@code load.customers}: number of customers, 1000 by default</li>
+ *     <li>{@code load.mix}: weights of the endpoints, like {@code ADD_ITEM=60,GET_BASKET=25}</li>
+ * </ul>
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+@Tag("load")
+@QuarkusTestResource(value = ProductsApiStub.class, restrictToAnnotatedClass = true)
+public class BasketLoadTest {
+
+    private static final Logger LOG = Logger.getLogger(BasketLoadTest.class);
+
+    @TestHTTPResource
+    URI baseUri;
+
+    /**
+     * Sends the mix of requests at the target rate and reports the throughput and latencies of each endpoint
+     */
+    @Test
+    public void loadTest() throws InterruptedException {
+        var rate = Integer.getInteger("load.rate", 200);
+        var duration = Duration.parse(System.getProperty("load.duration", "PT30S"));
+        var warmup = Duration.parse(System.getProperty("load.warmup", "PT10S"));
+
+        var loadGenerator = new LoadGenerator(baseUri, ProductsApiStub.PRODUCTS, Integer.getInteger("load.customers", 1000),
+                LoadGenerator.parseMix(System.getProperty("load.mix")));
+        try {
+            // Fills the caches and compiles the hot paths before measuring
+            loadGenerator.run(rate, warmup);
+
+            var report = loadGenerator.run(rate, duration);
+            LOG.infof("Load test at %d requests per second during %s:%s", rate, duration, report.format(duration));
+
+            assertTrue(report.getSuccesses() > 0);
+        } finally {
+            loadGenerator.close();
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package br.zapparolli.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The endpoints called by the load test and their default share of the requests
+ *
+ * @author lczapparolli
+ */
+@Getter
+@AllArgsConstructor
+public enum LoadEndpoint {
+
+    ADD_ITEM("POST /basket", 60),
+    GET_BASKET("GET /basket/{customerId}", 25),
+    CHECKOUT("POST /basket/{customerId}/checkout", 5),
+    LIST_PROMOTIONS("GET /promotion", 8),
+    CREATE_PROMOTION("POST /promotion", 2);
+
+    /**
+     * The method and path of the endpoint
+     */
+    private final String description;
+
+    /**
+     * The default weight of the endpoint in the mix of requests
+     */
+    private final int weight;
+
+}
@@ -0,0 +1,282 @@
+package br.zapparolli.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends a mix of requests to the application at a fixed rate. The requests are sent at their scheduled time whether
+ * the previous ones were answered or not, and the latency is measured from that time, so a slow response is not hidden
+ * by delaying the requests after it
+ *
+ * @author lczapparolli
+ */
+public class LoadGenerator {
+
+    /**
+     * The customer has no open basket
+     */
+    private static final int NO_BASKET = 0;
+
+    /**
+     * The customer has an open basket
+     */
+    private static final int OPEN_BASKET = 1;
+
+    /**
+     * The basket of the customer is being closed
+     */
+    private static final int CLOSING_BASKET = 2;
+
+    /**
+     * Time that a request waits for its response
+     */
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+
+    private final int products;
+
+    /**
+     * The state of the basket of each customer
+     */
+    private final AtomicIntegerArray baskets;
+
+    /**
+     * The weights of the endpoints in the mix, summing up to totalWeight
+     */
+    private final Map<LoadEndpoint, Integer> mix;
+
+    private final int totalWeight;
+
+    /**
+     * Gives a distinct minimum amount to each created promotion, so they are never rejected as duplicates
+     */
+    private final AtomicLong promotionTiers = new AtomicLong(1000);
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(executor)
+            .build();
+
+    /**
+     * Creates the generator
+     *
+     * @param baseUri The address of the application
+     * @param products The number of products in the catalog
+     * @param customers The number of customers sending requests
+     * @param mix The weight of each endpoint in the mix of requests
+     */
+    public LoadGenerator(URI baseUri, int products, int customers, Map<LoadEndpoint, Integer> mix) {
+        this.baseUri = baseUri;
+        this.products = products;
+        this.baskets = new AtomicIntegerArray(customers);
+        this.mix = new EnumMap<>(mix);
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Parses the mix of requests, in the format {@code ADD_ITEM=60,GET_BASKET=25}. The endpoints not informed keep
+     * their default weight
+     *
+     * @param value The mix to be parsed, empty for the default one
+     * @return Returns the weight of each endpoint
+     */
+    public static Map<LoadEndpoint, Integer> parseMix(String value) {
+        var mix = new EnumMap<LoadEndpoint, Integer>(LoadEndpoint.class);
+        for (var endpoint : LoadEndpoint.values()) {
+            mix.put(endpoint, endpoint.getWeight());
+        }
+        if (Objects.nonNull(value) && !value.isBlank()) {
+            for (var entry : value.split(",")) {
+                var parts = entry.split("=");
+                mix.put(LoadEndpoint.valueOf(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+            }
+        }
+        return mix;
+    }
+
+    /**
+     * Sends requests at the given rate, waiting for the responses of all of them
+     *
+     * @param rate The number of requests per second
+     * @param duration The time sending requests
+     * @return Returns the latencies and errors of the requests
+     * @throws InterruptedException Throws an exception if interrupted while waiting
+     */
+    public LoadReport run(int rate, Duration duration) throws InterruptedException {
+        var report = new LoadReport();
+        var interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        var start = System.nanoTime();
+        var end = start + duration.toNanos();
+
+        for (var scheduled = start; scheduled < end; scheduled += interval) {
+            // Waits for the scheduled time, without correcting the schedule if late
+            var wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(report, scheduled);
+        }
+
+        // The requests sent are answered or time out
+        var deadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return report;
+    }
+
+    /**
+     * Stops the threads of the client
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends a request of the mix
+     *
+     * @param report The report where the result is recorded
+     * @param scheduled The time when the request should be sent
+     */
+    private void send(LoadReport report, long scheduled) {
+        var random = ThreadLocalRandom.current();
+        var customer = random.nextInt(baskets.length());
+        var endpoint = chooseEndpoint(random.nextInt(totalWeight));
+
+        HttpRequest request;
+        switch (endpoint) {
+            case GET_BASKET:
+                if (baskets.get(customer) != OPEN_BASKET) {
+                    endpoint = LoadEndpoint.ADD_ITEM;
+                    request = addItem(customer, random.nextInt(products));
+                } else {
+                    request = newRequest("/basket/" + customerId(customer)).GET().build();
+                }
+                break;
+            case CHECKOUT:
+                // Only one checkout per basket, the others add items instead
+                if (!baskets.compareAndSet(customer, OPEN_BASKET, CLOSING_BASKET)) {
+                    endpoint = LoadEndpoint.ADD_ITEM;
+                    request = addItem(customer, random.nextInt(products));
+                } else {
+                    request = newRequest("/basket/" + customerId(customer) + "/checkout").POST(HttpRequest.BodyPublishers.noBody()).build();
+                }
+                break;
+            case LIST_PROMOTIONS:
+                request = newRequest("/promotion").GET().build();
+                break;
+            case CREATE_PROMOTION:
+                request = newRequest("/promotion")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(String.format("{\"productId\":\"%s\",\"minAmount\":%d,\"unitDiscount\":1}",
+                                ProductsApiStub.product(random.nextInt(products)).getId(), promotionTiers.incrementAndGet())))
+                        .build();
+                break;
+            default:
+                request = addItem(customer, random.nextInt(products));
+        }
+
+        var sentEndpoint = endpoint;
+        inFlight.incrementAndGet();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    var latency = System.nanoTime() - scheduled;
+                    if (Objects.isNull(error) && response.statusCode() / 100 == 2) {
+                        report.recordSuccess(sentEndpoint, latency);
+                        updateBasket(sentEndpoint, customer);
+                    } else {
+                        report.recordError(sentEndpoint);
+                        if (sentEndpoint == LoadEndpoint.CHECKOUT) {
+                            baskets.compareAndSet(customer, CLOSING_BASKET, OPEN_BASKET);
+                        }
+                    }
+                    inFlight.decrementAndGet();
+                });
+    }
+
+    /**
+     * Keeps the state of the basket of the customer after a successful request
+     *
+     * @param endpoint The endpoint called
+     * @param customer The number of the customer
+     */
+    private void updateBasket(LoadEndpoint endpoint, int customer) {
+        if (endpoint == LoadEndpoint.ADD_ITEM) {
+            baskets.compareAndSet(customer, NO_BASKET, OPEN_BASKET);
+        } else if (endpoint == LoadEndpoint.CHECKOUT) {
+            baskets.set(customer, NO_BASKET);
+        }
+    }
+
+    /**
+     * Chooses the endpoint of a request by its weight
+     *
+     * @param draw A random number from zero to the total weight
+     * @return Returns the chosen endpoint
+     */
+    private LoadEndpoint chooseEndpoint(int draw) {
+        var accumulated = 0;
+        for (var entry : mix.entrySet()) {
+            accumulated += entry.getValue();
+            if (draw < accumulated) {
+                return entry.getKey();
+            }
+        }
+        return LoadEndpoint.ADD_ITEM;
+    }
+
+    /**
+     * Creates the request that adds a unit of a product to the basket of the customer
+     *
+     * @param customer The number of the customer
+     * @param product The number of the product
+     * @return Returns the request
+     */
+    private HttpRequest addItem(int customer, int product) {
+        return newRequest("/basket")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(String.format("{\"customerId\":\"%s\",\"productId\":\"%s\",\"amount\":1}",
+                        customerId(customer), ProductsApiStub.product(product).getId())))
+                .build();
+    }
+
+    /**
+     * Starts a request to a path of the application
+     *
+     * @param path The path of the endpoint
+     * @return Returns the request builder
+     */
+    private HttpRequest.Builder newRequest(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Identifies a customer
+     *
+     * @param customer The number of the customer
+     * @return Returns the customer identification
+     */
+    private static String customerId(int customer) {
+        return "LOAD_CUSTOMER_" + customer;
+    }
+
+}
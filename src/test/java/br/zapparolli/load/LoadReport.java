@@ -0,0 +1,116 @@
+package br.zapparolli.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latencies and errors of a load test, by endpoint
+ *
+ * @author lczapparolli
+ */
+public class LoadReport {
+
+    /**
+     * Highest latency that can be recorded, in microseconds
+     */
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    /**
+     * The latencies of the successful requests, in microseconds
+     */
+    private final Map<LoadEndpoint, Histogram> latencies = new EnumMap<>(LoadEndpoint.class);
+
+    /**
+     * The number of failed requests
+     */
+    private final Map<LoadEndpoint, LongAdder> errors = new EnumMap<>(LoadEndpoint.class);
+
+    /**
+     * Creates an empty report for all endpoints
+     */
+    public LoadReport() {
+        for (var endpoint : LoadEndpoint.values()) {
+            latencies.put(endpoint, new ConcurrentHistogram(HIGHEST_LATENCY, 3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a successful request
+     *
+     * @param endpoint The endpoint called
+     * @param latencyNanos The time from when the request should have been sent until the response
+     */
+    public void recordSuccess(LoadEndpoint endpoint, long latencyNanos) {
+        latencies.get(endpoint).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY));
+    }
+
+    /**
+     * Records a failed request
+     *
+     * @param endpoint The endpoint called
+     */
+    public void recordError(LoadEndpoint endpoint) {
+        errors.get(endpoint).increment();
+    }
+
+    /**
+     * Get the number of successful requests of all endpoints
+     *
+     * @return Returns the number of requests
+     */
+    public long getSuccesses() {
+        return latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    /**
+     * Get the number of failed requests of all endpoints
+     *
+     * @return Returns the number of requests
+     */
+    public long getErrors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Formats the report as a table, with a line per endpoint
+     *
+     * @param elapsed The duration of the measurement
+     * @return Returns the formatted table
+     */
+    public String format(Duration elapsed) {
+        var seconds = elapsed.toNanos() / 1e9;
+        var table = new StringBuilder(String.format("%n| %-34s | %8s | %6s | %8s | %9s | %9s | %9s | %9s |%n",
+                "Endpoint", "Requests", "Errors", "Req/s", "p50 (ms)", "p99 (ms)", "p999 (ms)", "Max (ms)"));
+        for (var endpoint : LoadEndpoint.values()) {
+            var histogram = latencies.get(endpoint);
+            table.append(String.format("| %-34s | %8d | %6d | %8.1f | %9.2f | %9.2f | %9.2f | %9.2f |%n",
+                    endpoint.getDescription(),
+                    histogram.getTotalCount(),
+                    errors.get(endpoint).sum(),
+                    histogram.getTotalCount() / seconds,
+                    toMillis(histogram.getValueAtPercentile(50)),
+                    toMillis(histogram.getValueAtPercentile(99)),
+                    toMillis(histogram.getValueAtPercentile(99.9)),
+                    toMillis(histogram.getMaxValue())));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Converts a recorded latency to milliseconds
+     *
+     * @param micros The latency in microseconds
+     * @return Returns the latency in milliseconds
+     */
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+}
@@ -0,0 +1,164 @@
+package br.zapparolli.load;
+
+import br.zapparolli.model.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Local stand-in of the products API, serving a generated catalog with a configurable latency. It's started before
+ * the application and the products client is pointed to it
+ *
+ * @author lczapparolli
+ */
+public class ProductsApiStub implements QuarkusTestResourceLifecycleManager {
+
+    /**
+     * Number of products in the catalog
+     */
+    public static final int PRODUCTS = Integer.getInteger("load.products", 1000);
+
+    /**
+     * Minimum time taken by each response
+     */
+    private static final Duration LATENCY = Duration.parse(System.getProperty("load.products-latency", "PT0.02S"));
+
+    /**
+     * Maximum random time added to the latency of each response
+     */
+    private static final Duration JITTER = Duration.parse(System.getProperty("load.products-jitter", "PT0.01S"));
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * The JSON document of each product, indexed by the product identification
+     */
+    private Map<String, byte[]> productDocuments;
+
+    /**
+     * The JSON document of the whole catalog
+     */
+    private byte[] catalogDocument;
+
+    /**
+     * Creates the data of a product of the catalog
+     *
+     * @param index The number of the product
+     * @return Returns the product identified as PRODUCT_index
+     */
+    public static Product product(int index) {
+        return Product.builder()
+                .id("PRODUCT_" + index)
+                .name("Product " + index)
+                .price(BigInteger.valueOf(100 + index % 900))
+                .build();
+    }
+
+    /**
+     * Starts the server in a free port
+     *
+     * @return Returns the configuration that points the products client to the server
+     */
+    @Override
+    public Map<String, String> start() {
+        generateCatalog();
+        try {
+            // Each request waits its latency in its own thread, so slow responses don't delay the others
+            executor = Executors.newCachedThreadPool();
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/products", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        return Map.of("quarkus.rest-client.products-api.url", "http://localhost:" + server.getAddress().getPort());
+    }
+
+    /**
+     * Stops the server
+     */
+    @Override
+    public void stop() {
+        if (Objects.nonNull(server)) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Serializes the products once, so the stand-in spends its time only in the simulated latency
+     */
+    private void generateCatalog() {
+        var objectMapper = new ObjectMapper();
+        var products = IntStream.range(0, PRODUCTS)
+                .mapToObj(ProductsApiStub::product)
+                .collect(Collectors.toList());
+        try {
+            productDocuments = new HashMap<>();
+            for (var product : products) {
+                productDocuments.put(product.getId(), objectMapper.writeValueAsBytes(product));
+            }
+            catalogDocument = objectMapper.writeValueAsBytes(products);
+        } catch (JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Answers the list of products and the lookups of a single product
+     *
+     * @param exchange The request and its response
+     * @throws IOException Throws an exception if the response can't be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            simulateLatency();
+
+            var path = exchange.getRequestURI().getPath();
+            var document = "/products".equals(path) ? catalogDocument : productDocuments.get(path.substring(path.lastIndexOf('/') + 1));
+            if (Objects.isNull(document)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, document.length);
+            exchange.getResponseBody().write(document);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Waits the configured latency plus a random jitter
+     */
+    private void simulateLatency() {
+        var delay = LATENCY.toNanos() + (JITTER.isZero() ? 0 : ThreadLocalRandom.current().nextLong(JITTER.toNanos()));
+        try {
+            Thread.sleep(delay / 1_000_000, (int) (delay % 1_000_000));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package br.zapparolli.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.Objects;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the metrics of the endpoints
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+public class EndpointMetricsFilterTest {
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    /**
+     * Check if an error response is timed by endpoint and counted by error message
+     */
+    @Test
+    public void errorResponseTest() {
+        var errors = meterRegistry.get("api.errors")
+                .tag("error", "ERROR_NO_OPEN_BASKET")
+                .counter()
+                .count();
+        var requests = countRequests("BasketResource.getOpenBasket", "CLIENT_ERROR");
+
+        given()
+            .when()
+                .get("/basket/METRICS_NO_BASKET")
+            .then()
+                .statusCode(404);
+
+        assertEquals(requests + 1, countRequests("BasketResource.getOpenBasket", "CLIENT_ERROR"));
+        assertEquals(errors + 1, meterRegistry.get("api.errors").tag("error", "ERROR_NO_OPEN_BASKET").counter().count());
+
+        // The request is finished, so it's not in progress anymore
+        var inFlight = meterRegistry.get("endpoint.in.flight")
+                .tag("endpoint", "BasketResource.getOpenBasket")
+                .gauge()
+                .value();
+        assertEquals(0, inFlight);
+    }
+
+    /**
+     * Check if the endpoint timers are published as histograms
+     */
+    @Test
+    public void histogramTest() {
+        given()
+            .when()
+                .get("/promotion")
+            .then()
+                .statusCode(200);
+
+        given()
+            .when()
+                .get("/q/metrics")
+            .then()
+                .statusCode(200)
+                .body(containsString("endpoint_requests_seconds_bucket{endpoint=\"PromotionResource.listPromotions\""));
+    }
+
+    /**
+     * Check if the database work of a request is recorded and returned in the debug header
+     */
+    @Test
+    public void queryStatisticsTest() {
+        var summary = meterRegistry.find("endpoint.statements")
+                .tag("endpoint", "BasketResource.getOpenBasket")
+                .summary();
+        var requests = Objects.isNull(summary) ? 0 : summary.count();
+
+        given()
+            .when()
+                .get("/basket/METRICS_NO_BASKET")
+            .then()
+                .statusCode(404)
+                .header("X-Query-Statistics", matchesPattern("statements=\\d+;entity-loads=\\d+;collection-fetches=\\d+"));
+
+        var statements = meterRegistry.get("endpoint.statements")
+                .tag("endpoint", "BasketResource.getOpenBasket")
+                .summary();
+        assertEquals(requests + 1, statements.count());
+        // The basket was searched at least once
+        assertTrue(statements.max() >= 1);
+    }
+
+    /**
+     * Get the number of requests timed for the endpoint
+     *
+     * @param endpoint The resource class and method
+     * @param outcome The family of the response status
+     * @return Returns the number of requests or zero if the endpoint was not called yet
+     */
+    private long countRequests(String endpoint, String outcome) {
+        var timer = meterRegistry.find("endpoint.requests")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .timer();
+        return Objects.isNull(timer) ? 0 : timer.count();
+    }
+
+}
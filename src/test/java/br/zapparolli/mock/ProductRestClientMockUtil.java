@@ -8,6 +8,7 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import java.math.BigInteger;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Utility class to configure Products API mock
@@ -47,6 +48,12 @@ public class ProductRestClientMockUtil {
         // In case of an invalid product
         Mockito.when(productsRestClient.getProduct("INVALID_ID")).thenThrow(new WebApplicationException(Response.status(Response.Status.NOT_FOUND).build()));
         Mockito.when(productsRestClient.getProduct("API_ERROR")).thenThrow(new WebApplicationException(Response.status(Response.Status.INTERNAL_SERVER_ERROR).build()));
+
+        // Non-blocking client
+        Mockito.when(productsRestClient.getProductAsync(PRODUCT_1.getId())).thenReturn(CompletableFuture.completedFuture(PRODUCT_1));
+        Mockito.when(productsRestClient.getProductAsync(PRODUCT_2.getId())).thenReturn(CompletableFuture.completedFuture(PRODUCT_2));
+        Mockito.when(productsRestClient.getProductAsync("INVALID_ID")).thenReturn(CompletableFuture.failedFuture(new WebApplicationException(Response.status(Response.Status.NOT_FOUND).build())));
+        Mockito.when(productsRestClient.getProductAsync("API_ERROR")).thenReturn(CompletableFuture.failedFuture(new WebApplicationException(Response.status(Response.Status.INTERNAL_SERVER_ERROR).build())));
     }
 
 }
@@ -1,14 +1,26 @@
 package br.zapparolli.repository;
 
 import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketItem;
+import br.zapparolli.entity.Promotion;
 import io.quarkus.test.junit.QuarkusTest;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 
 import javax.inject.Inject;
+import javax.persistence.PersistenceException;
 import javax.transaction.Transactional;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -20,6 +32,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 public class BasketRepositoryTest {
 
     @Inject BasketRepository basketRepository;
+    @Inject PromotionRepository promotionRepository;
 
     /**
      * Check the result of the method if there is an open basket for the giving customer
@@ -39,6 +52,108 @@ public class BasketRepositoryTest {
         assertEquals("OPEN_BASKET_TEST", openBasket.get().getCustomerId());
     }
 
+    /**
+     * Check if the database rejects a second open basket for the same customer
+     */
+    @Test
+    @Transactional
+    public void uniqueOpenBasketTest() {
+        basketRepository.persistAndFlush(Basket.newBasket("UNIQUE_OPEN_TEST"));
+
+        assertThrows(PersistenceException.class, () -> basketRepository.persistAndFlush(Basket.newBasket("UNIQUE_OPEN_TEST")));
+    }
+
+    /**
+     * Check if a customer can open a new basket after closing the previous one
+     */
+    @Test
+    @Transactional
+    public void uniqueOpenBasketClosedTest() {
+        var closedBasket = Basket.newBasket("UNIQUE_CLOSED_TEST");
+        closedBasket.setOpen(false);
+        basketRepository.persistAndFlush(closedBasket);
+
+        basketRepository.persistAndFlush(Basket.newBasket("UNIQUE_CLOSED_TEST"));
+        assertEquals(2, basketRepository.findByCustomer("UNIQUE_CLOSED_TEST").size());
+    }
+
+    /**
+     * Check if the items, the promotions and the combos are loaded with the basket
+     */
+    @Test
+    @Transactional
+    public void findOpenBasketFetchTest() {
+        var promotion = Promotion.builder()
+                .productId(PRODUCT_1.getId())
+                .minAmount(BigInteger.ONE)
+                .unitDiscount(BigInteger.ONE)
+                .build();
+        promotionRepository.persist(promotion);
+
+        var basket = Basket.newBasket("FETCH_BASKET_TEST");
+        var basketItem1 = BasketItem.newBasketItem(basket, PRODUCT_1);
+        basketItem1.setAmount(BigInteger.ONE);
+        basketItem1.setPromotion(promotion);
+        var basketItem2 = BasketItem.newBasketItem(basket, PRODUCT_2);
+        basketItem2.setAmount(BigInteger.ONE);
+        basketRepository.persist(basket);
+
+        // Removes the entities from the session, so they must be loaded again
+        basketRepository.getEntityManager().flush();
+        basketRepository.getEntityManager().clear();
+
+        var openBasket = basketRepository.findOpenBasket("FETCH_BASKET_TEST").orElseThrow();
+        assertTrue(Hibernate.isInitialized(openBasket.getItems()));
+        assertTrue(Hibernate.isInitialized(openBasket.getCombos()));
+        assertEquals(2, openBasket.getItems().size());
+        openBasket.getItems().stream()
+                .filter(item -> item.getProductId().equals(PRODUCT_1.getId()))
+                .forEach(item -> assertTrue(Hibernate.isInitialized(item.getPromotion())));
+    }
+
+    /**
+     * Check if the items loaded by Hibernate are found by the product and new items are indexed as they are added
+     */
+    @Test
+    @Transactional
+    public void findItemTest() {
+        var basket = Basket.newBasket("FIND_ITEM_TEST");
+        BasketItem.newBasketItem(basket, PRODUCT_1).setAmount(BigInteger.ONE);
+        basketRepository.persist(basket);
+        basketRepository.getEntityManager().flush();
+        basketRepository.getEntityManager().clear();
+
+        var openBasket = basketRepository.findOpenBasket("FIND_ITEM_TEST").orElseThrow();
+        assertEquals(PRODUCT_1.getId(), openBasket.findItem(PRODUCT_1.getId()).orElseThrow().getProductId());
+        assertTrue(openBasket.findItem(PRODUCT_2.getId()).isEmpty());
+
+        var newItem = BasketItem.newBasketItem(openBasket, PRODUCT_2);
+        assertSame(newItem, openBasket.findItem(PRODUCT_2.getId()).orElseThrow());
+        assertEquals(2, openBasket.getItemsByProduct().size());
+    }
+
+    /**
+     * Check if the index of the items follows the list when it's replaced, and the list can't be changed without it
+     */
+    @Test
+    public void setItemsTest() {
+        var basket = Basket.newBasket("SET_ITEMS_TEST");
+        var item = BasketItem.newBasketItem(basket, PRODUCT_1);
+        assertSame(item, basket.findItem(PRODUCT_1.getId()).orElseThrow());
+
+        // A new item of the same product replaces the indexed one
+        var replacement = BasketItem.builder()
+                .basket(basket)
+                .productId(PRODUCT_1.getId())
+                .build();
+        basket.setItems(new ArrayList<>(List.of(replacement)));
+        assertSame(replacement, basket.findItem(PRODUCT_1.getId()).orElseThrow());
+
+        assertThrows(UnsupportedOperationException.class, () -> basket.getItems().add(item));
+        basket.setItems(new ArrayList<>());
+        assertTrue(basket.findItem(PRODUCT_1.getId()).isEmpty());
+    }
+
     /**
      * Check the result of the method if there is no open basket for the giving customer
      */
@@ -61,4 +176,28 @@ public class BasketRepositoryTest {
         assertTrue(openBasket.isEmpty());
     }
 
+    /**
+     * Check the listing of the baskets of the giving customer
+     */
+    @Test
+    @Transactional
+    public void findByCustomerTest() {
+        var closedBasket = Basket.builder()
+                .customerId("HISTORY_TEST")
+                .isOpen(false)
+                .build();
+        basketRepository.persist(closedBasket);
+        var openBasket = Basket.builder()
+                .customerId("HISTORY_TEST")
+                .isOpen(true)
+                .build();
+        basketRepository.persist(openBasket);
+
+        // The most recent basket comes first
+        var baskets = basketRepository.findByCustomer("HISTORY_TEST");
+        assertEquals(2, baskets.size());
+        assertEquals(openBasket.getId(), baskets.get(0).getId());
+        assertEquals(closedBasket.getId(), baskets.get(1).getId());
+    }
+
 }
@@ -11,7 +11,6 @@ import javax.transaction.Transactional;
 import java.math.BigInteger;
 
 import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
-import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -36,66 +35,11 @@ public class PromotionRepositoryTest {
     }
 
     /**
-     * Check the return of the query
+     * Check the query of a tier by its minimum amount
      */
     @Test
     @Transactional
-    public void findByProductTest() {
-        // Creates a promotion for the product
-        var insertedPromotion = Promotion.builder()
-                .productId(PRODUCT_1.getId())
-                .minAmount(BigInteger.ONE)
-                .unitDiscount(BigInteger.ONE)
-                .build();
-        promotionRepository.persist(insertedPromotion);
-
-        // Executes the query
-        var promoction = promotionRepository.findByProduct(PRODUCT_1.getId());
-        assertTrue(promoction.isPresent());
-        assertEquals(insertedPromotion, promoction.get());
-    }
-
-    /**
-     * Check the return of the query when no promotion is found
-     */
-    @Test
-    public void findByProductEmptyTest() {
-        var promoction = promotionRepository.findByProduct(PRODUCT_2.getId());
-        assertTrue(promoction.isEmpty());
-    }
-
-    /**
-     * Check the return of the query
-     */
-    @Test
-    @Transactional
-    public void findByProductAmountTest() {
-        // Creates a promotion for the product
-        var insertedPromotion = Promotion.builder()
-                .productId(PRODUCT_1.getId())
-                .minAmount(BigInteger.ONE)
-                .unitDiscount(BigInteger.ONE)
-                .build();
-        promotionRepository.persist(insertedPromotion);
-
-        // Executes the query with the same amount
-        var promotion = promotionRepository.findByProductAmount(PRODUCT_1.getId(), BigInteger.ONE);
-        assertTrue(promotion.isPresent());
-        assertEquals(insertedPromotion, promotion.get());
-
-        // Executes the query with a greater amount
-        promotion = promotionRepository.findByProductAmount(PRODUCT_1.getId(), BigInteger.TWO);
-        assertTrue(promotion.isPresent());
-        assertEquals(insertedPromotion, promotion.get());
-    }
-
-    /**
-     * Check the return of the query when no promotion is found
-     */
-    @Test
-    @Transactional
-    public void findByProductAmountEmptyTest() {
-        // Creates a promotion for the product
+    public void findByProductMinAmountTest() {
         var insertedPromotion = Promotion.builder()
                 .productId(PRODUCT_1.getId())
                 .minAmount(BigInteger.TWO)
@@ -103,13 +47,8 @@ public class PromotionRepositoryTest {
                 .build();
         promotionRepository.persist(insertedPromotion);
 
-        // Executes the query with a lesser amount
-        var promotion = promotionRepository.findByProductAmount(PRODUCT_1.getId(), BigInteger.ONE);
-        assertTrue(promotion.isEmpty());
-
-        // Executes the query with a different product id
-        promotion = promotionRepository.findByProductAmount(PRODUCT_2.getId(), BigInteger.TWO);
-        assertTrue(promotion.isEmpty());
+        assertEquals(insertedPromotion, promotionRepository.findByProductMinAmount(PRODUCT_1.getId(), BigInteger.TWO).orElseThrow());
+        assertTrue(promotionRepository.findByProductMinAmount(PRODUCT_1.getId(), BigInteger.ONE).isEmpty());
     }
 
 }
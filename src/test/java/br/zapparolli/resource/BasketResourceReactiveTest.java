@@ -0,0 +1,108 @@
+package br.zapparolli.resource;
+
+import br.zapparolli.exception.ErrorMessage;
+import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.resource.client.ProductsRestClient;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.junit.mockito.InjectMock;
+import io.restassured.config.JsonConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.path.json.config.JsonPathConfig;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.math.BigInteger;
+import java.util.Map;
+
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the basket resource with the non-blocking products client
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+@TestProfile(BasketResourceReactiveTest.ReactiveProfile.class)
+public class BasketResourceReactiveTest {
+
+    @InjectMock
+    @RestClient
+    ProductsRestClient productsRestClient;
+
+    @BeforeEach
+    public void setup() {
+        ProductRestClientMockUtil.configMock(productsRestClient);
+    }
+
+    /**
+     * Check the item addition
+     */
+    @Test
+    public void addItemTest() {
+        var newBasketItem = NewBasketItem.builder()
+                .customerId("RESOURCE_REACTIVE_ADD_TEST")
+                .productId(PRODUCT_2.getId())
+                .amount(BigInteger.ONE)
+                .build();
+
+        given()
+            .when()
+                .config(RestAssuredConfig.newConfig().jsonConfig(JsonConfig.jsonConfig().numberReturnType(JsonPathConfig.NumberReturnType.BIG_INTEGER)))
+                .body(newBasketItem)
+                .contentType(MediaType.APPLICATION_JSON)
+                .post("/basket")
+            .then()
+                .statusCode(200)
+                .body("customerId", is(newBasketItem.getCustomerId()))
+                .body("total", is(PRODUCT_2.getPrice()))
+                .body("items[0].productId", is(PRODUCT_2.getId()))
+                .body("items[0].productName", is(PRODUCT_2.getName()));
+
+        // Checks if only the non-blocking client was used
+        verify(productsRestClient, never()).getProduct(anyString());
+    }
+
+    /**
+     * Check the return in case of an error
+     */
+    @Test
+    public void addItemErrorTest() {
+        var newBasketItem = NewBasketItem.builder()
+                .customerId("RESOURCE_REACTIVE_INVALID_TEST")
+                .productId("INVALID_ID")
+                .amount(BigInteger.ONE)
+                .build();
+
+        given()
+            .when()
+                .body(newBasketItem)
+                .contentType(MediaType.APPLICATION_JSON)
+                .post("/basket")
+            .then()
+                .statusCode(404)
+                .body("message", is(ErrorMessage.ERROR_PRODUCT_NOT_FOUND.getMessage()));
+    }
+
+    /**
+     * Enables the non-blocking products client
+     */
+    public static class ReactiveProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("qikserve.products.reactive", "true");
+        }
+
+    }
+
+}
@@ -2,6 +2,8 @@ package br.zapparolli.resource;
 
 import br.zapparolli.exception.ErrorMessage;
 import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.NewBasketBatch;
+import br.zapparolli.model.NewBasketBatchItem;
 import br.zapparolli.model.NewBasketItem;
 import br.zapparolli.resource.client.ProductsRestClient;
 import br.zapparolli.service.BasketService;
@@ -17,6 +19,7 @@ import org.junit.jupiter.api.Test;
 import javax.inject.Inject;
 import javax.ws.rs.core.MediaType;
 import java.math.BigInteger;
+import java.util.List;
 
 import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
 import static io.restassured.RestAssured.given;
@@ -95,6 +98,35 @@ public class BasketResourceTest {
                 .body("message", is(ErrorMessage.ERROR_PRODUCT_NOT_FOUND.getMessage()));
     }
 
+    /**
+     * Check the addition of several items, with the rejected ones
+     */
+    @Test
+    public void addItemsTest() {
+        var newBasketBatch = NewBasketBatch.builder()
+                .customerId("RESOURCE_BATCH_TEST")
+                .partial(true)
+                .items(List.of(
+                        NewBasketBatchItem.builder().productId(PRODUCT_1.getId()).amount(BigInteger.TWO).build(),
+                        NewBasketBatchItem.builder().productId("INVALID_ID").amount(BigInteger.ONE).build()))
+                .build();
+
+        given()
+            .when()
+                .config(RestAssuredConfig.newConfig().jsonConfig(JsonConfig.jsonConfig().numberReturnType(JsonPathConfig.NumberReturnType.BIG_INTEGER)))
+                .body(newBasketBatch)
+                .contentType(MediaType.APPLICATION_JSON)
+                .post("/basket/batch")
+            .then()
+                .statusCode(200)
+                .body("basket.customerId", is(newBasketBatch.getCustomerId()))
+                .body("basket.total", is(PRODUCT_1.getPrice().multiply(BigInteger.TWO)))
+                .body("basket.items[0].amount", is(BigInteger.TWO))
+                .body("rejectedItems[0].index", is(BigInteger.ONE))
+                .body("rejectedItems[0].productId", is("INVALID_ID"))
+                .body("rejectedItems[0].message", is(ErrorMessage.ERROR_PRODUCT_NOT_FOUND.getMessage()));
+    }
+
     /**
      * Check the checkout process
      */
@@ -177,6 +209,33 @@ public class BasketResourceTest {
                 .body("items[0].discount", is(BigInteger.ZERO));
     }
 
+    /**
+     * Check the listing of the customer baskets
+     */
+    @Test
+    public void getBasketHistoryTest() {
+        // Creates a closed and an open basket
+        var newBasketItem = NewBasketItem.builder()
+                .customerId("RESOURCE_HISTORY_TEST")
+                .amount(BigInteger.ONE)
+                .productId(PRODUCT_1.getId())
+                .build();
+        basketService.addItem(newBasketItem);
+        basketService.checkout(newBasketItem.getCustomerId());
+        basketService.addItem(newBasketItem);
+
+        given()
+            .when()
+                .config(RestAssuredConfig.newConfig().jsonConfig(JsonConfig.jsonConfig().numberReturnType(JsonPathConfig.NumberReturnType.BIG_INTEGER)))
+                .get("/basket/RESOURCE_HISTORY_TEST/history")
+            .then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .body("[0].open", is(true))
+                .body("[0].total", is(PRODUCT_1.getPrice()))
+                .body("[1].open", is(false))
+                .body("[1].total", is(PRODUCT_1.getPrice()));
+    }
 
     /**
      * Check the return in case of an error
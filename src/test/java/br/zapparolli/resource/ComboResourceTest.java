@@ -0,0 +1,125 @@
+package br.zapparolli.resource;
+
+import br.zapparolli.entity.ComboType;
+import br.zapparolli.exception.ErrorMessage;
+import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.ComboProduct;
+import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.model.NewCombo;
+import br.zapparolli.resource.client.ProductsRestClient;
+import br.zapparolli.utils.DatabaseUtils;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import javax.ws.rs.core.MediaType;
+import java.math.BigInteger;
+import java.util.List;
+
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+/**
+ * Tests for the combo resource
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+public class ComboResourceTest {
+
+    @Inject
+    DatabaseUtils databaseUtils;
+
+    @InjectMock
+    @RestClient
+    ProductsRestClient productsRestClient;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        databaseUtils.clearDB();
+        ProductRestClientMockUtil.configMock(productsRestClient);
+    }
+
+    /**
+     * Check the creation of a combo and its use in a basket
+     */
+    @Test
+    public void createComboTest() {
+        var newCombo = NewCombo.builder()
+                .name("Bundle")
+                .type(ComboType.BUNDLE)
+                .items(List.of(
+                        ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build(),
+                        ComboProduct.builder().productId(PRODUCT_2.getId()).amount(BigInteger.ONE).build()))
+                .discount(BigInteger.valueOf(50))
+                .build();
+
+        given()
+            .when()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(newCombo)
+                .post("/combo")
+            .then()
+                .statusCode(200)
+                .body("id", is(notNullValue()))
+                .body("type", is(ComboType.BUNDLE.name()))
+                .body("items.size()", is(2));
+
+        given()
+            .when()
+                .get("/combo")
+            .then()
+                .statusCode(200)
+                .body("size()", is(1));
+
+        // Completes the combo in a basket
+        for (var product : List.of(PRODUCT_1, PRODUCT_2)) {
+            given()
+                .when()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(NewBasketItem.builder()
+                            .customerId("COMBO_RESOURCE")
+                            .productId(product.getId())
+                            .amount(BigInteger.ONE)
+                            .build())
+                    .post("/basket")
+                .then()
+                    .statusCode(200);
+        }
+
+        var rawValue = PRODUCT_1.getPrice().add(PRODUCT_2.getPrice()).intValue();
+        given()
+            .when()
+                .get("/basket/COMBO_RESOURCE")
+            .then()
+                .statusCode(200)
+                .body("combos.size()", is(1))
+                .body("combos[0].discount", is(50))
+                .body("discount", is(50))
+                .body("total", is(rawValue - 50));
+    }
+
+    /**
+     * Check the return when an error occurs
+     */
+    @Test
+    public void createComboErrorTest() {
+        given()
+            .when()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(NewCombo.builder().type(ComboType.BUNDLE).build())
+                .post("/combo")
+            .then()
+                .statusCode(400)
+                .body("message", is(ErrorMessage.ERROR_COMBO_INVALID_NAME.getMessage()));
+    }
+
+}
@@ -1,6 +1,8 @@
 package br.zapparolli.service;
 
 import br.zapparolli.entity.Basket;
+import br.zapparolli.entity.BasketCombo;
+import br.zapparolli.entity.Combo;
 import br.zapparolli.entity.BasketItem;
 import br.zapparolli.entity.Promotion;
 import br.zapparolli.mock.ProductRestClientMockUtil;
@@ -19,6 +21,9 @@ import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
 import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests for the basket converter
@@ -31,6 +36,9 @@ public class BasketConverterTest {
     @Inject
     BasketConverter basketConverter;
 
+    @Inject
+    BasketPricing basketPricing;
+
     @InjectMock
     @RestClient
     ProductsRestClient productsRestClient;
@@ -53,6 +61,7 @@ public class BasketConverterTest {
         basketItem2.setAmount(BigInteger.TWO);
 
         // Converts the object
+        basketPricing.price(basket);
         var converted = basketConverter.convertBasket(basket);
 
         // Checks the basket data
@@ -63,26 +72,43 @@ public class BasketConverterTest {
         // Checks the Item 1 data
         assertEquals(basketItem1.getProductId(), converted.getItems().get(0).getProductId());
         assertEquals(PRODUCT_1.getName(), converted.getItems().get(0).getProductName());
-        assertEquals(basketItem1.getUnitPrice(), converted.getItems().get(0).getUnitPrice());
-        assertEquals(basketItem1.getAmount(), converted.getItems().get(0).getAmount());
-        assertEquals(basketItem1.getUnitPrice().multiply(basketItem1.getAmount()), converted.getItems().get(0).getItemTotal());
+        assertEquals(basketItem1.getUnitPrice().longValueExact(), converted.getItems().get(0).getUnitPrice());
+        assertEquals(basketItem1.getAmount().longValueExact(), converted.getItems().get(0).getAmount());
+        assertEquals(basketItem1.getUnitPrice().multiply(basketItem1.getAmount()).longValueExact(), converted.getItems().get(0).getItemTotal());
         assertEquals(converted.getItems().get(0).getRawValue(), converted.getItems().get(0).getItemTotal());
-        assertEquals(BigInteger.ZERO, converted.getItems().get(0).getDiscount());
+        assertEquals(0, converted.getItems().get(0).getDiscount());
 
         // Checks the Item 2 data
         assertEquals(basketItem2.getProductId(), converted.getItems().get(1).getProductId());
         assertEquals(PRODUCT_2.getName(), converted.getItems().get(1).getProductName());
-        assertEquals(basketItem2.getUnitPrice(), converted.getItems().get(1).getUnitPrice());
-        assertEquals(basketItem2.getAmount(), converted.getItems().get(1).getAmount());
-        assertEquals(basketItem2.getUnitPrice().multiply(basketItem2.getAmount()), converted.getItems().get(1).getRawValue());
+        assertEquals(basketItem2.getUnitPrice().longValueExact(), converted.getItems().get(1).getUnitPrice());
+        assertEquals(basketItem2.getAmount().longValueExact(), converted.getItems().get(1).getAmount());
+        assertEquals(basketItem2.getUnitPrice().multiply(basketItem2.getAmount()).longValueExact(), converted.getItems().get(1).getRawValue());
         assertEquals(converted.getItems().get(1).getRawValue(), converted.getItems().get(1).getItemTotal());
-        assertEquals(BigInteger.ZERO, converted.getItems().get(1).getDiscount());
+        assertEquals(0, converted.getItems().get(1).getDiscount());
 
         // Checks the basket total
-        var basketTotal = converted.getItems().stream().map(InsertedBasketItem::getItemTotal).reduce(BigInteger.ZERO, BigInteger::add);
+        var basketTotal = converted.getItems().stream().mapToLong(InsertedBasketItem::getItemTotal).sum();
         assertEquals(basketTotal, converted.getTotal());
         assertEquals(basketTotal, converted.getRawValue());
-        assertEquals(BigInteger.ZERO, converted.getDiscount());
+        assertEquals(0, converted.getDiscount());
+    }
+
+    /**
+     * Check if the product name stored in the item is used, without querying the products API
+     */
+    @Test
+    public void convertBasketStoredNameTest() {
+        var basket = Basket.newBasket("CONVERTED_BASKET_NAME");
+        var basketItem = BasketItem.newBasketItem(basket, PRODUCT_1);
+        basketItem.setAmount(BigInteger.ONE);
+        basketItem.setProductName("Stored name");
+
+        basketPricing.price(basket);
+        var converted = basketConverter.convertBasket(basket);
+
+        assertEquals("Stored name", converted.getItems().get(0).getProductName());
+        verify(productsRestClient, never()).getProduct(anyString());
     }
 
     /**
@@ -109,6 +135,7 @@ public class BasketConverterTest {
                 .build());
 
         // Converts the object
+        basketPricing.price(basket);
         var converted = basketConverter.convertBasket(basket);
 
         // Checks the basket data
@@ -119,29 +146,62 @@ public class BasketConverterTest {
         // Checks the Item 1 data
         assertEquals(basketItem1.getProductId(), converted.getItems().get(0).getProductId());
         assertEquals(PRODUCT_1.getName(), converted.getItems().get(0).getProductName());
-        assertEquals(basketItem1.getUnitPrice(), converted.getItems().get(0).getUnitPrice());
-        assertEquals(basketItem1.getAmount(), converted.getItems().get(0).getAmount());
-        assertEquals(basketItem1.getUnitPrice().multiply(basketItem1.getAmount()), converted.getItems().get(0).getRawValue());
-        assertEquals(basketItem1.getPromotion().getUnitDiscount().multiply(basketItem1.getAmount()), converted.getItems().get(0).getDiscount());
-        assertEquals(converted.getItems().get(0).getRawValue().subtract(converted.getItems().get(0).getDiscount()), converted.getItems().get(0).getItemTotal());
+        assertEquals(basketItem1.getUnitPrice().longValueExact(), converted.getItems().get(0).getUnitPrice());
+        assertEquals(basketItem1.getAmount().longValueExact(), converted.getItems().get(0).getAmount());
+        assertEquals(basketItem1.getUnitPrice().multiply(basketItem1.getAmount()).longValueExact(), converted.getItems().get(0).getRawValue());
+        assertEquals(basketItem1.getPromotion().getUnitDiscount().multiply(basketItem1.getAmount()).longValueExact(), converted.getItems().get(0).getDiscount());
+        assertEquals(converted.getItems().get(0).getRawValue() - converted.getItems().get(0).getDiscount(), converted.getItems().get(0).getItemTotal());
 
         // Checks the Item 2 data
         assertEquals(basketItem2.getProductId(), converted.getItems().get(1).getProductId());
         assertEquals(PRODUCT_2.getName(), converted.getItems().get(1).getProductName());
-        assertEquals(basketItem2.getUnitPrice(), converted.getItems().get(1).getUnitPrice());
-        assertEquals(basketItem2.getAmount(), converted.getItems().get(1).getAmount());
-        assertEquals(basketItem2.getUnitPrice().multiply(basketItem2.getAmount()), converted.getItems().get(1).getRawValue());
-        assertEquals(basketItem2.getPromotion().getUnitDiscount().multiply(basketItem2.getAmount()), converted.getItems().get(1).getDiscount());
-        assertEquals(converted.getItems().get(1).getRawValue().subtract(converted.getItems().get(1).getDiscount()), converted.getItems().get(1).getItemTotal());
+        assertEquals(basketItem2.getUnitPrice().longValueExact(), converted.getItems().get(1).getUnitPrice());
+        assertEquals(basketItem2.getAmount().longValueExact(), converted.getItems().get(1).getAmount());
+        assertEquals(basketItem2.getUnitPrice().multiply(basketItem2.getAmount()).longValueExact(), converted.getItems().get(1).getRawValue());
+        assertEquals(basketItem2.getPromotion().getUnitDiscount().multiply(basketItem2.getAmount()).longValueExact(), converted.getItems().get(1).getDiscount());
+        assertEquals(converted.getItems().get(1).getRawValue() - converted.getItems().get(1).getDiscount(), converted.getItems().get(1).getItemTotal());
 
         // Checks the basket total
-        var basketTotal = converted.getItems().stream().map(InsertedBasketItem::getItemTotal).reduce(BigInteger.ZERO, BigInteger::add);
+        var basketTotal = converted.getItems().stream().mapToLong(InsertedBasketItem::getItemTotal).sum();
         assertEquals(basketTotal, converted.getTotal());
 
-        var rawTotal = converted.getItems().stream().map(InsertedBasketItem::getRawValue).reduce(BigInteger.ZERO, BigInteger::add);
+        var rawTotal = converted.getItems().stream().mapToLong(InsertedBasketItem::getRawValue).sum();
         assertEquals(rawTotal, converted.getRawValue());
 
-        var discount = converted.getItems().stream().map(InsertedBasketItem::getDiscount).reduce(BigInteger.ZERO, BigInteger::add);
+        var discount = converted.getItems().stream().mapToLong(InsertedBasketItem::getDiscount).sum();
         assertEquals(discount, converted.getDiscount());
     }
+
+    /**
+     * Check the conversion of the basket with combos
+     */
+    @Test
+    public void convertBasketWithComboTest() {
+        var basket = Basket.newBasket("CONVERTED_BASKET_COMBO");
+        var basketItem = BasketItem.newBasketItem(basket, PRODUCT_1);
+        basketItem.setAmount(BigInteger.TWO);
+
+        var basketCombo = BasketCombo.newBasketCombo(basket, Combo.builder()
+                .id(1L)
+                .name("Combo")
+                .build());
+        basketCombo.setTimes(BigInteger.ONE);
+        basketCombo.setDiscount(BigInteger.TEN);
+
+        basketPricing.price(basket);
+        var converted = basketConverter.convertBasket(basket);
+
+        // Checks the combo data
+        assertEquals(1, converted.getCombos().size());
+        assertEquals(1L, converted.getCombos().get(0).getComboId());
+        assertEquals("Combo", converted.getCombos().get(0).getName());
+        assertEquals(1, converted.getCombos().get(0).getTimes());
+        assertEquals(10, converted.getCombos().get(0).getDiscount());
+
+        // Checks if the combo discount is in the basket total
+        var rawValue = PRODUCT_1.getPrice().multiply(BigInteger.TWO).longValueExact();
+        assertEquals(rawValue, converted.getRawValue());
+        assertEquals(10, converted.getDiscount());
+        assertEquals(rawValue - 10, converted.getTotal());
+    }
 }
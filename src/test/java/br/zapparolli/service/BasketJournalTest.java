@@ -0,0 +1,201 @@
+package br.zapparolli.service;
+
+import br.zapparolli.model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the basket journal
+ *
+ * @author lczapparolli
+ */
+public class BasketJournalTest {
+
+    private static final Product PRODUCT = Product.builder()
+            .id("PRODUCT")
+            .name("Product")
+            .price(BigInteger.valueOf(1299))
+            .build();
+
+    private static final Duration ARCHIVE_RETENTION = Duration.ofDays(1);
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Check if the appended events are read back in order, with their data
+     */
+    @Test
+    public void appendAndReadTest() {
+        var journal = new BasketJournal(directory, ARCHIVE_RETENTION);
+        journal.start();
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.TWO));
+        journal.append(BasketEvent.checkout("CUSTOMER"));
+        journal.close();
+
+        var events = new BasketJournal(directory, ARCHIVE_RETENTION).readEvents();
+        assertEquals(2, events.size());
+        assertEquals(BasketEvent.Type.ADD, events.get(0).getType());
+        assertEquals(1, events.get(0).getSequence());
+        assertEquals(PRODUCT, events.get(0).getProduct());
+        assertEquals(BigInteger.TWO, events.get(0).getAmount());
+        assertEquals(BasketEvent.Type.CHECKOUT, events.get(1).getType());
+        assertEquals(2, events.get(1).getSequence());
+    }
+
+    /**
+     * Check if concurrent appends share the disk syncs
+     */
+    @Test
+    public void groupCommitTest() throws Exception {
+        var journal = new BasketJournal(directory, ARCHIVE_RETENTION);
+        journal.start();
+
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var tasks = IntStream.range(0, 200)
+                    .mapToObj(index -> (Callable<BasketEvent>) () -> journal.append(BasketEvent.add("CUSTOMER_" + index, PRODUCT, BigInteger.ONE)))
+                    .collect(Collectors.toList());
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            journal.close();
+        }
+
+        assertEquals(200, journal.getAppendedEvents());
+        assertTrue(journal.getSyncs() <= journal.getAppendedEvents());
+        assertEquals(200, new BasketJournal(directory, ARCHIVE_RETENTION).readEvents().size());
+    }
+
+    /**
+     * Check if an incomplete record at the end of a segment is ignored and the sequences continue after the last one
+     */
+    @Test
+    public void incompleteRecordTest() throws Exception {
+        var journal = new BasketJournal(directory, ARCHIVE_RETENTION);
+        journal.start();
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.ONE));
+        journal.close();
+
+        // Simulates a crash in the middle of a write
+        try (var segments = Files.list(directory)) {
+            var segment = segments.filter(Files::isRegularFile).findFirst().orElseThrow();
+            Files.write(segment, "partial".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+
+        var recoveredJournal = new BasketJournal(directory, ARCHIVE_RETENTION);
+        assertEquals(1, recoveredJournal.readEvents().size());
+        recoveredJournal.start();
+        var event = recoveredJournal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.ONE));
+        recoveredJournal.close();
+
+        assertEquals(2, event.getSequence());
+        assertEquals(2, new BasketJournal(directory, ARCHIVE_RETENTION).readEvents().size());
+    }
+
+    /**
+     * Check if the events of a write whose sync failed are not read back, while the next events are
+     */
+    @Test
+    public void syncFailureTest() {
+        var failNextSync = new AtomicBoolean();
+        var journal = new BasketJournal(directory, ARCHIVE_RETENTION) {
+            @Override
+            void sync(FileChannel segmentChannel) throws IOException {
+                if (failNextSync.getAndSet(false)) {
+                    throw new IOException("Simulated sync failure");
+                }
+                super.sync(segmentChannel);
+            }
+        };
+        journal.start();
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.ONE));
+        failNextSync.set(true);
+        assertThrows(UncheckedIOException.class, () -> journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.TWO)));
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.TEN));
+        journal.close();
+
+        // The failed addition was reported to the caller, so the replay must not apply it
+        var events = new BasketJournal(directory, ARCHIVE_RETENTION).readEvents();
+        assertEquals(List.of(1L, 3L), events.stream().map(BasketEvent::getSequence).collect(Collectors.toList()));
+        assertEquals(BigInteger.TEN, events.get(1).getAmount());
+    }
+
+    /**
+     * Check if the snapshot replaces the segments written before it, which are archived
+     */
+    @Test
+    public void snapshotTest() {
+        var journal = new BasketJournal(directory, ARCHIVE_RETENTION);
+        journal.start();
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.ONE));
+        journal.snapshot(() -> "state".getBytes(StandardCharsets.UTF_8));
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.ONE));
+        journal.close();
+
+        var recoveredJournal = new BasketJournal(directory, ARCHIVE_RETENTION);
+        var snapshot = recoveredJournal.readSnapshot().orElseThrow();
+        assertEquals(1, snapshot.getSequence());
+        assertEquals("state", new String(snapshot.getState(), StandardCharsets.UTF_8));
+
+        // Only the events after the snapshot are read
+        var events = recoveredJournal.readEvents();
+        assertEquals(1, events.size());
+        assertEquals(2, events.get(0).getSequence());
+
+        // The events covered by the snapshot are kept in the archive
+        var archivedEvents = recoveredJournal.readArchivedEvents();
+        assertEquals(1, archivedEvents.size());
+        assertEquals(1, archivedEvents.get(0).getSequence());
+    }
+
+    /**
+     * Check if the archived segments are removed once they are older than the retention
+     */
+    @Test
+    public void archiveRetentionTest() throws Exception {
+        var journal = new BasketJournal(directory, ARCHIVE_RETENTION);
+        journal.start();
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.ONE));
+        journal.snapshot(() -> "state".getBytes(StandardCharsets.UTF_8));
+        journal.append(BasketEvent.add("CUSTOMER", PRODUCT, BigInteger.ONE));
+
+        // Simulates an archived segment written before the retention
+        try (var segments = Files.list(directory.resolve("archive"))) {
+            var segment = segments.findFirst().orElseThrow();
+            Files.setLastModifiedTime(segment, FileTime.from(Instant.now().minus(ARCHIVE_RETENTION).minusSeconds(60)));
+        }
+        journal.snapshot(() -> "state".getBytes(StandardCharsets.UTF_8));
+        journal.close();
+
+        // Only the segment archived by the last snapshot is kept
+        var archivedEvents = new BasketJournal(directory, ARCHIVE_RETENTION).readArchivedEvents();
+        assertEquals(1, archivedEvents.size());
+        assertEquals(2, archivedEvents.get(0).getSequence());
+    }
+
+}
@@ -0,0 +1,143 @@
+package br.zapparolli.service;
+
+import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.NewBasketBatch;
+import br.zapparolli.model.NewBasketBatchItem;
+import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.model.Product;
+import br.zapparolli.resource.client.ProductsRestClient;
+import br.zapparolli.utils.DatabaseUtils;
+import br.zapparolli.utils.QueryCountUtils;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mockito;
+
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.math.BigInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the number of statements of the basket operations, which should not grow with the size of the basket
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+public class BasketServiceQueryCountTest {
+
+    /**
+     * Loading the basket and its combos, generating the item identification, inserting the item and updating the basket
+     */
+    private static final long ADD_ITEM_STATEMENTS = 6;
+
+    /**
+     * Loading the basket with its items and promotions, then its combos
+     */
+    private static final long GET_OPEN_BASKET_STATEMENTS = 3;
+
+    /**
+     * Loading the basket and its combos, then closing it
+     */
+    private static final long CHECKOUT_STATEMENTS = 4;
+
+    /**
+     * Prefix of the products generated for the tests
+     */
+    private static final String PRODUCT_PREFIX = "QUERY_COUNT_PRODUCT_";
+
+    @Inject BasketService basketService;
+    @Inject DatabaseUtils databaseUtils;
+    @Inject QueryCountUtils queryCountUtils;
+
+    @InjectMock
+    @RestClient
+    ProductsRestClient productsRestClient;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        databaseUtils.clearDB();
+        ProductRestClientMockUtil.configMock(productsRestClient);
+        // Any number of products can be added to the basket
+        Mockito.when(productsRestClient.getProduct(Mockito.startsWith(PRODUCT_PREFIX)))
+                .thenAnswer(invocation -> Product.builder()
+                        .id(invocation.getArgument(0))
+                        .name("Query count product")
+                        .price(BigInteger.valueOf(100))
+                        .build());
+    }
+
+    /**
+     * Check the statements of the addition of a new product to baskets of different sizes
+     *
+     * @param basketSize The number of items in the basket
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 10, 50 })
+    public void addItemTest(int basketSize) {
+        var customerId = fillBasket(basketSize);
+        var newBasketItem = NewBasketItem.builder()
+                .customerId(customerId)
+                .productId(PRODUCT_PREFIX + basketSize)
+                .amount(BigInteger.ONE)
+                .build();
+
+        queryCountUtils.assertMaxStatements(ADD_ITEM_STATEMENTS, () -> basketService.addItem(newBasketItem));
+    }
+
+    /**
+     * Check the statements of the query of baskets of different sizes
+     *
+     * @param basketSize The number of items in the basket
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 10, 50 })
+    public void getOpenBasketTest(int basketSize) {
+        var customerId = fillBasket(basketSize);
+
+        var queries = queryCountUtils.assertMaxStatements(GET_OPEN_BASKET_STATEMENTS, () -> basketService.getOpenBasket(customerId));
+        // The items are loaded with the basket, not one collection at a time
+        assertEquals(0, queries.getCollectionFetches());
+    }
+
+    /**
+     * Check the statements of the checkout of baskets of different sizes
+     *
+     * @param basketSize The number of items in the basket
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 10, 50 })
+    public void checkoutTest(int basketSize) {
+        var customerId = fillBasket(basketSize);
+
+        queryCountUtils.assertMaxStatements(CHECKOUT_STATEMENTS, () -> basketService.checkout(customerId));
+    }
+
+    /**
+     * Opens a basket with a unit of each of the given number of products
+     *
+     * @param basketSize The number of items in the basket
+     * @return Returns the identification of the customer of the basket
+     */
+    private String fillBasket(int basketSize) {
+        var customerId = "QUERY_COUNT_CUSTOMER_" + basketSize;
+        basketService.addItems(NewBasketBatch.builder()
+                .customerId(customerId)
+                .items(IntStream.range(0, basketSize)
+                        .mapToObj(index -> NewBasketBatchItem.builder()
+                                .productId(PRODUCT_PREFIX + index)
+                                .amount(BigInteger.ONE)
+                                .build())
+                        .collect(Collectors.toList()))
+                .build());
+        return customerId;
+    }
+
+}
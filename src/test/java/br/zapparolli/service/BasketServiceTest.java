@@ -1,22 +1,37 @@
 package br.zapparolli.service;
 
-import br.zapparolli.entity.Promotion;
+import br.zapparolli.entity.ComboType;
 import br.zapparolli.exception.ErrorMessage;
+import br.zapparolli.exception.QikServeException;
 import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.ComboProduct;
+import br.zapparolli.model.NewBasketBatch;
+import br.zapparolli.model.NewBasketBatchItem;
 import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.model.NewCombo;
+import br.zapparolli.model.NewPromotion;
 import br.zapparolli.repository.BasketRepository;
-import br.zapparolli.repository.PromotionRepository;
 import br.zapparolli.resource.client.ProductsRestClient;
 import br.zapparolli.utils.DatabaseUtils;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.inject.Inject;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 import javax.transaction.Transactional;
 import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
 import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
@@ -37,7 +52,8 @@ public class BasketServiceTest {
 
     @Inject BasketService basketService;
     @Inject BasketRepository basketRepository;
-    @Inject PromotionRepository promotionRepository;
+    @Inject PromotionService promotionService;
+    @Inject ComboService comboService;
     @Inject DatabaseUtils databaseUtils;
 
     @InjectMock
@@ -79,6 +95,95 @@ public class BasketServiceTest {
         assertEquals(newBasketItem.getProductId(), insertedBasket.getItems().get(0).getProductId());
         assertEquals(newBasketItem.getAmount(), insertedBasket.getItems().get(0).getAmount());
         assertEquals(PRODUCT_1.getPrice(), insertedBasket.getItems().get(0).getUnitPrice());
+        assertEquals(PRODUCT_1.getName(), insertedBasket.getItems().get(0).getProductName());
+    }
+
+    /**
+     * Check if concurrent additions for a new customer end up in a single open basket
+     */
+    @Test
+    public void addItemConcurrentNewBasketTest() throws Exception {
+        var newBasketItem = NewBasketItem.builder()
+                .customerId("CONCURRENT_BASKET_CUSTOMER")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .build();
+
+        // Adds the item from several threads at the same time
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var tasks = IntStream.range(0, 4)
+                    .mapToObj(index -> (Callable<Long>) () -> basketService.addItem(newBasketItem).getId())
+                    .collect(Collectors.toList());
+            var basketIds = executor.invokeAll(tasks).stream()
+                    .map(this::getResult)
+                    .collect(Collectors.toSet());
+
+            // All requests used the same basket
+            assertEquals(1, basketIds.size());
+            assertEquals(1, basketRepository.findByCustomer(newBasketItem.getCustomerId()).size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Check if only the violation of the open basket constraint is retried as a conflict
+     */
+    @Test
+    public void conflictReasonTest() {
+        var openBasket = new PersistenceException(new ConstraintViolationException("Duplicate open basket", new SQLException(),
+                "PUBLIC.UK_BASKET_OPEN_CUSTOMER_INDEX_7 ON PUBLIC.BASKET(OPEN_CUSTOMER_ID)"));
+        assertEquals("open-basket", basketService.getConflictReason(openBasket));
+        assertEquals("version", basketService.getConflictReason(new OptimisticLockException()));
+
+        // Other violations are errors of the data, not conflicts
+        assertNull(basketService.getConflictReason(new PersistenceException(new ConstraintViolationException("Null product",
+                new SQLException(), "NOT_NULL_PRODUCT_ID"))));
+        assertNull(basketService.getConflictReason(new PersistenceException(new ConstraintViolationException("Unknown basket",
+                new SQLException(), null))));
+    }
+
+    /**
+     * Check if concurrent additions to the same item don't lose any unit
+     */
+    @Test
+    public void addItemConcurrentSameItemTest() throws Exception {
+        var newBasketItem = NewBasketItem.builder()
+                .customerId("CONCURRENT_ITEM_CUSTOMER")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .build();
+        var basket = basketService.addItem(newBasketItem);
+        var initialVersion = basket.getVersion();
+
+        // Adds the item from several threads at the same time
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var tasks = IntStream.range(0, 8)
+                    .mapToObj(index -> (Callable<Boolean>) () -> {
+                        try {
+                            basketService.addItem(newBasketItem);
+                            return true;
+                        } catch (QikServeException exception) {
+                            // Only a conflict in all attempts is accepted
+                            assertEquals(ErrorMessage.ERROR_BASKET_CONFLICT, exception.getErrorMessage());
+                            return false;
+                        }
+                    })
+                    .collect(Collectors.toList());
+            var successes = executor.invokeAll(tasks).stream()
+                    .map(this::getResult)
+                    .filter(Boolean::booleanValue)
+                    .count();
+
+            // Every successful addition is in the basket and changed its version
+            var openBasket = basketService.getOpenBasket(newBasketItem.getCustomerId());
+            assertEquals(BigInteger.valueOf(1 + successes), openBasket.getItems().get(0).getAmount());
+            assertEquals(initialVersion + successes, openBasket.getVersion());
+        } finally {
+            executor.shutdown();
+        }
     }
 
     /**
@@ -193,6 +298,31 @@ public class BasketServiceTest {
         assertThrows(ErrorMessage.ERROR_INVALID_AMOUNT, () -> basketService.addItem(negativeAmountItem));
     }
 
+    /**
+     * Check the addition of an amount whose value does not fit in cents
+     */
+    @Test
+    public void addItemOverflowAmountTest() {
+        basketService.addItem(NewBasketItem.builder()
+                .customerId("OVERFLOW_AMOUNT_BASKET")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .build());
+
+        var overflowAmountItem = NewBasketItem.builder()
+                .customerId("OVERFLOW_AMOUNT_BASKET")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.valueOf(Long.MAX_VALUE))
+                .build();
+        // Checks if the service throws the excepted exception
+        assertThrows(ErrorMessage.ERROR_INVALID_AMOUNT, () -> basketService.addItem(overflowAmountItem));
+
+        // The basket is not changed
+        var basket = basketService.getOpenBasket("OVERFLOW_AMOUNT_BASKET");
+        assertEquals(BigInteger.ONE, basket.getItems().get(0).getAmount());
+        assertEquals(PRODUCT_1.getPrice(), basket.getTotal());
+    }
+
     /**
      * Check the addition of an item with an invalid customer id
      */
@@ -215,19 +345,89 @@ public class BasketServiceTest {
         assertThrows(ErrorMessage.ERROR_INVALID_CUSTOMER_ID, () -> basketService.addItem(emptyCustomerItem));
     }
 
+    /**
+     * Check if all items of a batch are added to the same basket, with the items of the same product together
+     */
+    @Test
+    public void addItemsBatchTest() {
+        var batchResult = basketService.addItems(NewBasketBatch.builder()
+                .customerId("BATCH_CUSTOMER")
+                .items(List.of(
+                        newBatchItem(PRODUCT_1.getId(), BigInteger.ONE),
+                        newBatchItem(PRODUCT_2.getId(), BigInteger.TWO),
+                        newBatchItem(PRODUCT_1.getId(), BigInteger.ONE)))
+                .build());
+
+        assertTrue(batchResult.getRejectedItems().isEmpty());
+        var basket = basketService.getOpenBasket("BATCH_CUSTOMER");
+        assertEquals(2, basket.getItems().size());
+        assertEquals(BigInteger.TWO, basket.getItems().stream()
+                .filter(item -> item.getProductId().equals(PRODUCT_1.getId()))
+                .findFirst()
+                .orElseThrow()
+                .getAmount());
+        assertEquals(PRODUCT_1.getPrice().add(PRODUCT_2.getPrice()).multiply(BigInteger.TWO), basket.getTotal());
+    }
+
+    /**
+     * Check if an invalid item fails the whole batch when it's not partial
+     */
+    @Test
+    public void addItemsBatchInvalidTest() {
+        var newBasketBatch = NewBasketBatch.builder()
+                .customerId("BATCH_INVALID_CUSTOMER")
+                .items(List.of(
+                        newBatchItem(PRODUCT_1.getId(), BigInteger.ONE),
+                        newBatchItem("INVALID_ID", BigInteger.ONE)))
+                .build();
+
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> basketService.addItems(newBasketBatch));
+        assertThrows(ErrorMessage.ERROR_NO_OPEN_BASKET, () -> basketService.getOpenBasket("BATCH_INVALID_CUSTOMER"));
+
+        // The batch must have items and a customer
+        assertThrows(ErrorMessage.ERROR_BATCH_EMPTY, () -> basketService.addItems(NewBasketBatch.builder()
+                .customerId("BATCH_INVALID_CUSTOMER")
+                .items(List.of())
+                .build()));
+        assertThrows(ErrorMessage.ERROR_INVALID_CUSTOMER_ID, () -> basketService.addItems(NewBasketBatch.builder()
+                .items(List.of(newBatchItem(PRODUCT_1.getId(), BigInteger.ONE)))
+                .build()));
+    }
+
+    /**
+     * Check if the invalid items of a partial batch are rejected and the others are added
+     */
+    @Test
+    public void addItemsPartialBatchTest() {
+        var batchResult = basketService.addItems(NewBasketBatch.builder()
+                .customerId("BATCH_PARTIAL_CUSTOMER")
+                .partial(true)
+                .items(List.of(
+                        newBatchItem("INVALID_ID", BigInteger.ONE),
+                        newBatchItem(PRODUCT_1.getId(), BigInteger.ONE),
+                        newBatchItem(PRODUCT_2.getId(), BigInteger.ZERO)))
+                .build());
+
+        assertEquals(1, batchResult.getBasket().getItems().size());
+        assertEquals(PRODUCT_1.getPrice(), batchResult.getBasket().getTotal());
+        assertEquals(2, batchResult.getRejectedItems().size());
+        assertEquals(0, batchResult.getRejectedItems().get(0).getIndex());
+        assertEquals(ErrorMessage.ERROR_PRODUCT_NOT_FOUND.getMessage(), batchResult.getRejectedItems().get(0).getMessage());
+        assertEquals(2, batchResult.getRejectedItems().get(1).getIndex());
+        assertEquals(ErrorMessage.ERROR_INVALID_AMOUNT.getMessage(), batchResult.getRejectedItems().get(1).getMessage());
+    }
+
     /**
      * Check if the promotion is applied to the item
      */
     @Test
-    @Transactional
     public void addItemCheckPromotionTest() {
         // Creates a promotion
-        var promotion = Promotion.builder()
+        var promotion = promotionService.createPromotion(NewPromotion.builder()
                 .productId(PRODUCT_1.getId())
                 .minAmount(BigInteger.TWO)
                 .unitDiscount(BigInteger.ONE)
-                .build();
-        promotionRepository.persist(promotion);
+                .build());
 
         var newBasketItem = NewBasketItem.builder()
                 .productId(PRODUCT_1.getId())
@@ -248,6 +448,262 @@ public class BasketServiceTest {
 
     }
 
+    /**
+     * Check if a higher promotion tier replaces the current one when the amount grows
+     */
+    @Test
+    public void addItemPromotionTierTest() {
+        var lowerTier = promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_2.getId())
+                .minAmount(BigInteger.TWO)
+                .unitDiscount(BigInteger.ONE)
+                .build());
+        var higherTier = promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_2.getId())
+                .minAmount(BigInteger.valueOf(4))
+                .unitDiscount(BigInteger.TEN)
+                .build());
+
+        var newBasketItem = NewBasketItem.builder()
+                .productId(PRODUCT_2.getId())
+                .amount(BigInteger.TWO)
+                .customerId("PROMOTION_TIER_TEST")
+                .build();
+
+        var basket = basketService.addItem(newBasketItem);
+        assertEquals(lowerTier, basket.getItems().get(0).getPromotion());
+
+        basket = basketService.addItem(newBasketItem);
+        assertEquals(higherTier, basket.getItems().get(0).getPromotion());
+    }
+
+    /**
+     * Check if a bundle is applied once all its products are in the basket
+     */
+    @Test
+    public void addItemBundleComboTest() {
+        var combo = comboService.createCombo(NewCombo.builder()
+                .name("Bundle")
+                .type(ComboType.BUNDLE)
+                .items(List.of(
+                        ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build(),
+                        ComboProduct.builder().productId(PRODUCT_2.getId()).amount(BigInteger.ONE).build()))
+                .discount(BigInteger.valueOf(50))
+                .build());
+
+        var item1 = NewBasketItem.builder()
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .customerId("BUNDLE_TEST")
+                .build();
+        var item2 = NewBasketItem.builder()
+                .productId(PRODUCT_2.getId())
+                .amount(BigInteger.ONE)
+                .customerId("BUNDLE_TEST")
+                .build();
+
+        // The bundle is not complete with a single product
+        var basket = basketService.addItem(item1);
+        assertTrue(basket.getCombos().isEmpty());
+
+        basket = basketService.addItem(item2);
+        assertEquals(1, basket.getCombos().size());
+        assertEquals(combo.getId(), basket.getCombos().get(0).getCombo().getId());
+        assertEquals(BigInteger.ONE, basket.getCombos().get(0).getTimes());
+        assertEquals(BigInteger.valueOf(50), basket.getCombos().get(0).getDiscount());
+
+        // The bundle is applied again when both products are added
+        basketService.addItem(item1);
+        basket = basketService.addItem(item2);
+        assertEquals(1, basket.getCombos().size());
+        assertEquals(BigInteger.TWO, basket.getCombos().get(0).getTimes());
+        assertEquals(BigInteger.valueOf(100), basket.getCombos().get(0).getDiscount());
+    }
+
+    /**
+     * Check if a buy X get Y combo gives the free units
+     */
+    @Test
+    public void addItemBuyXGetYComboTest() {
+        comboService.createCombo(NewCombo.builder()
+                .name("Buy 2 get 1")
+                .type(ComboType.BUY_X_GET_Y)
+                .items(List.of(ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.TWO).build()))
+                .freeAmount(BigInteger.ONE)
+                .build());
+
+        var newBasketItem = NewBasketItem.builder()
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.TWO)
+                .customerId("BUY_X_GET_Y_TEST")
+                .build();
+
+        // Two units are not enough
+        var basket = basketService.addItem(newBasketItem);
+        assertTrue(basket.getCombos().isEmpty());
+
+        // Four units complete the combo once
+        basket = basketService.addItem(newBasketItem);
+        assertEquals(BigInteger.ONE, basket.getCombos().get(0).getTimes());
+        assertEquals(PRODUCT_1.getPrice(), basket.getCombos().get(0).getDiscount());
+
+        // Six units complete the combo twice
+        basket = basketService.addItem(newBasketItem);
+        assertEquals(BigInteger.TWO, basket.getCombos().get(0).getTimes());
+        assertEquals(PRODUCT_1.getPrice().multiply(BigInteger.TWO), basket.getCombos().get(0).getDiscount());
+    }
+
+    /**
+     * Check if the free units of a combo are valued after the promotion of the product, keeping the total positive
+     */
+    @Test
+    public void addItemTieredBuyXGetYComboTest() {
+        promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_1.getId())
+                .minAmount(BigInteger.TWO)
+                .unitDiscount(BigInteger.valueOf(100))
+                .build());
+        comboService.createCombo(NewCombo.builder()
+                .name("Buy 1 get 1")
+                .type(ComboType.BUY_X_GET_Y)
+                .items(List.of(ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build()))
+                .freeAmount(BigInteger.ONE)
+                .build());
+
+        var basket = basketService.addItem(NewBasketItem.builder()
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.TWO)
+                .customerId("TIERED_BUY_X_GET_Y_TEST")
+                .build());
+
+        // The free unit only discounts what is left of its price after the promotion
+        var discountedPrice = PRODUCT_1.getPrice().subtract(BigInteger.valueOf(100));
+        assertEquals(discountedPrice, basket.getCombos().get(0).getDiscount());
+        assertEquals(discountedPrice, basket.getTotal());
+        assertTrue(basket.getTotal().signum() >= 0);
+    }
+
+    /**
+     * Check if the discount of a bundle is limited to the value of its units after their promotions
+     */
+    @Test
+    public void addItemBundleLimitedByPromotionTest() {
+        promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_1.getId())
+                .minAmount(BigInteger.ONE)
+                .unitDiscount(PRODUCT_1.getPrice())
+                .build());
+        comboService.createCombo(NewCombo.builder()
+                .name("Bundle")
+                .type(ComboType.BUNDLE)
+                .items(List.of(
+                        ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build(),
+                        ComboProduct.builder().productId(PRODUCT_2.getId()).amount(BigInteger.ONE).build()))
+                .discount(BigInteger.valueOf(300))
+                .build());
+
+        basketService.addItem(NewBasketItem.builder()
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .customerId("BUNDLE_LIMIT_TEST")
+                .build());
+        var basket = basketService.addItem(NewBasketItem.builder()
+                .productId(PRODUCT_2.getId())
+                .amount(BigInteger.ONE)
+                .customerId("BUNDLE_LIMIT_TEST")
+                .build());
+
+        // The first product is already free, so the bundle discounts at most the price of the second one
+        assertEquals(PRODUCT_2.getPrice(), basket.getCombos().get(0).getDiscount());
+        assertEquals(BigInteger.ZERO, basket.getTotal());
+    }
+
+    /**
+     * Check if the units of a product are not used by two combos at the same time
+     */
+    @Test
+    public void addItemOverlappingCombosTest() {
+        comboService.createCombo(NewCombo.builder()
+                .name("Bundle")
+                .type(ComboType.BUNDLE)
+                .items(List.of(
+                        ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build(),
+                        ComboProduct.builder().productId(PRODUCT_2.getId()).amount(BigInteger.ONE).build()))
+                .discount(BigInteger.TEN)
+                .build());
+        var buyOneGetOne = comboService.createCombo(NewCombo.builder()
+                .name("Buy 1 get 1")
+                .type(ComboType.BUY_X_GET_Y)
+                .items(List.of(ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build()))
+                .freeAmount(BigInteger.ONE)
+                .build());
+
+        basketService.addItem(NewBasketItem.builder()
+                .productId(PRODUCT_2.getId())
+                .amount(BigInteger.ONE)
+                .customerId("OVERLAPPING_TEST")
+                .build());
+        var basket = basketService.addItem(NewBasketItem.builder()
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.TWO)
+                .customerId("OVERLAPPING_TEST")
+                .build());
+
+        // The combo with the greatest discount takes both units of the product
+        assertEquals(1, basket.getCombos().size());
+        assertEquals(buyOneGetOne.getId(), basket.getCombos().get(0).getCombo().getId());
+    }
+
+    /**
+     * Check if the running values of the basket match the values calculated from all items
+     */
+    @Test
+    public void addItemRunningTotalsTest() {
+        promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_1.getId())
+                .minAmount(BigInteger.TWO)
+                .unitDiscount(BigInteger.TEN)
+                .build());
+        comboService.createCombo(NewCombo.builder()
+                .name("Bundle")
+                .type(ComboType.BUNDLE)
+                .items(List.of(
+                        ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build(),
+                        ComboProduct.builder().productId(PRODUCT_2.getId()).amount(BigInteger.ONE).build()))
+                .discount(BigInteger.valueOf(50))
+                .build());
+
+        // Adds the products one unit at a time, reaching the promotion and the combo
+        var basket = basketService.addItem(NewBasketItem.builder()
+                .customerId("RUNNING_TOTALS")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .build());
+        assertEquals(PRODUCT_1.getPrice(), basket.getTotal());
+        basketService.addItem(NewBasketItem.builder()
+                .customerId("RUNNING_TOTALS")
+                .productId(PRODUCT_2.getId())
+                .amount(BigInteger.ONE)
+                .build());
+        basket = basketService.addItem(NewBasketItem.builder()
+                .customerId("RUNNING_TOTALS")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .build());
+
+        var rawValue = PRODUCT_1.getPrice().multiply(BigInteger.TWO).add(PRODUCT_2.getPrice());
+        var discount = BigInteger.valueOf(20 + 50);
+        assertEquals(rawValue, basket.getRawValue());
+        assertEquals(discount, basket.getDiscount());
+        assertEquals(rawValue.subtract(discount), basket.getTotal());
+
+        // The values of a loaded basket are the same
+        var openBasket = basketService.getOpenBasket("RUNNING_TOTALS");
+        assertEquals(rawValue, openBasket.getRawValue());
+        assertEquals(discount, openBasket.getDiscount());
+        assertEquals(rawValue.subtract(discount), openBasket.getTotal());
+    }
+
     /**
      * Check the checkout process
      */
@@ -291,6 +747,56 @@ public class BasketServiceTest {
         assertEquals(basket.getId(), openBasket.getId());
     }
 
+    /**
+     * Check if the product name is filled for items stored without it
+     */
+    @Test
+    public void getOpenBasketBackfillNameTest() {
+        // Creates a basket and removes the name of the item
+        basketService.addItem(NewBasketItem.builder()
+                .customerId("BACKFILL_BASKET")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.ONE)
+                .build());
+        databaseUtils.clearProductNames();
+
+        // Checks if the name is filled again
+        var openBasket = basketService.getOpenBasket("BACKFILL_BASKET");
+        assertEquals(PRODUCT_1.getName(), openBasket.getItems().get(0).getProductName());
+    }
+
+    /**
+     * Check the listing of the customer baskets, including the ones stored without the values
+     */
+    @Test
+    public void getBasketHistoryTest() {
+        var newBasketItem = NewBasketItem.builder()
+                .customerId("HISTORY_BASKET")
+                .productId(PRODUCT_1.getId())
+                .amount(BigInteger.TWO)
+                .build();
+        basketService.addItem(newBasketItem);
+        basketService.checkout(newBasketItem.getCustomerId());
+        basketService.addItem(newBasketItem);
+        databaseUtils.clearBasketValues();
+
+        // The values are calculated again from the items
+        var baskets = basketService.getBasketHistory(newBasketItem.getCustomerId());
+        assertEquals(2, baskets.size());
+        assertTrue(baskets.get(0).isOpen());
+        assertFalse(baskets.get(1).isOpen());
+        var rawValue = PRODUCT_1.getPrice().multiply(BigInteger.TWO);
+        baskets.forEach(basket -> {
+            assertEquals(rawValue, basket.getRawValue());
+            assertEquals(BigInteger.ZERO, basket.getDiscount());
+            assertEquals(rawValue, basket.getTotal());
+        });
+
+        // The calculated values are stored in the basket rows
+        var storedBaskets = basketRepository.findByCustomer(newBasketItem.getCustomerId());
+        assertEquals(rawValue, storedBaskets.get(1).getTotal());
+    }
+
     /**
      * Check the result if there is no open basket for the given customer
      */
@@ -299,4 +805,32 @@ public class BasketServiceTest {
         assertThrows(ErrorMessage.ERROR_NO_OPEN_BASKET, () -> basketService.getOpenBasket("NO_OPEN_BASKET"));
     }
 
+    /**
+     * Get the result of a finished task
+     *
+     * @param future The task
+     * @return Returns the result of the task
+     */
+    private <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Creates the data of an item of a batch
+     *
+     * @param productId The product identification
+     * @param amount The units purchased
+     * @return Returns the item data
+     */
+    private NewBasketBatchItem newBatchItem(String productId, BigInteger amount) {
+        return NewBasketBatchItem.builder()
+                .productId(productId)
+                .amount(amount)
+                .build();
+    }
+
 }
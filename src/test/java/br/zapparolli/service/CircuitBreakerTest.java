@@ -0,0 +1,79 @@
+package br.zapparolli.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the circuit breaker
+ *
+ * @author lczapparolli
+ */
+public class CircuitBreakerTest {
+
+    /**
+     * Current time used by the circuit breaker
+     */
+    private final AtomicLong now = new AtomicLong();
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(2, Duration.ofNanos(100), now::get);
+
+    /**
+     * Check if the circuit opens after consecutive failures
+     */
+    @Test
+    public void openTest() {
+        circuitBreaker.onFailure();
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    /**
+     * Check if a success resets the count of failures
+     */
+    @Test
+    public void successResetTest() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    /**
+     * Check if a single trial request is allowed after the open duration
+     */
+    @Test
+    public void halfOpenTest() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        // Allows only one request after the delay
+        now.addAndGet(100);
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        // A failure in the trial opens the circuit again
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        // A success in the trial closes the circuit
+        now.addAndGet(100);
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+}
@@ -0,0 +1,83 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Combo;
+import br.zapparolli.entity.ComboItem;
+import br.zapparolli.entity.ComboType;
+import br.zapparolli.repository.ComboRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the in-memory index of the combos
+ *
+ * @author lczapparolli
+ */
+public class ComboIndexTest {
+
+    /**
+     * Check if a combo created while the index is rebuilt is kept by the rebuilt index
+     */
+    @Test
+    public void createdDuringRebuildTest() {
+        var stored = newCombo(1L, "PRODUCT_1");
+        var created = newCombo(2L, "PRODUCT_2");
+
+        var comboIndex = new ComboIndex();
+        comboIndex.comboRepository = Mockito.mock(ComboRepository.class);
+        // The combo is committed after the database was read, so the read doesn't return it
+        Mockito.when(comboIndex.comboRepository.listAll()).thenAnswer(invocation -> {
+            comboIndex.onComboCreated(created);
+            return List.of(stored);
+        });
+
+        comboIndex.rebuild();
+
+        assertEquals(List.of(stored), comboIndex.findByProduct("PRODUCT_1"));
+        assertEquals(List.of(created), comboIndex.findByProduct("PRODUCT_2"));
+    }
+
+    /**
+     * Check if a combo created during the rebuild and also read from the database is kept once
+     */
+    @Test
+    public void createdAndReadDuringRebuildTest() {
+        var created = newCombo(1L, "PRODUCT_1");
+
+        var comboIndex = new ComboIndex();
+        comboIndex.comboRepository = Mockito.mock(ComboRepository.class);
+        Mockito.when(comboIndex.comboRepository.listAll()).thenAnswer(invocation -> {
+            comboIndex.onComboCreated(created);
+            return List.of(created);
+        });
+
+        comboIndex.rebuild();
+
+        assertEquals(List.of(created), comboIndex.findByProduct("PRODUCT_1"));
+    }
+
+    /**
+     * Creates a buy 1 get 1 combo
+     *
+     * @param id The combo identification
+     * @param productId The product identification
+     * @return Returns the combo
+     */
+    private static Combo newCombo(Long id, String productId) {
+        return Combo.builder()
+                .id(id)
+                .name("Combo " + id)
+                .type(ComboType.BUY_X_GET_Y)
+                .items(List.of(ComboItem.builder()
+                        .productId(productId)
+                        .amount(BigInteger.ONE)
+                        .build()))
+                .freeAmount(BigInteger.ONE)
+                .build();
+    }
+
+}
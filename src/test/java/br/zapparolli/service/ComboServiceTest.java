@@ -0,0 +1,149 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.ComboType;
+import br.zapparolli.exception.ErrorMessage;
+import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.ComboProduct;
+import br.zapparolli.model.NewCombo;
+import br.zapparolli.repository.ComboRepository;
+import br.zapparolli.resource.client.ProductsRestClient;
+import br.zapparolli.utils.DatabaseUtils;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.math.BigInteger;
+import java.util.List;
+
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
+import static br.zapparolli.utils.AssertionUtils.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests for the combo service
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+public class ComboServiceTest {
+
+    @Inject
+    ComboService comboService;
+
+    @Inject
+    ComboRepository comboRepository;
+
+    @Inject
+    ComboIndex comboIndex;
+
+    @Inject
+    DatabaseUtils databaseUtils;
+
+    @InjectMock
+    @RestClient
+    ProductsRestClient productsRestClient;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        databaseUtils.clearDB();
+        ProductRestClientMockUtil.configMock(productsRestClient);
+    }
+
+    /**
+     * Check the creation of a bundle
+     */
+    @Test
+    public void createBundleTest() {
+        var combo = comboService.createCombo(newBundle(BigInteger.valueOf(50)));
+
+        assertNotNull(combo.getId());
+        assertEquals(1, comboRepository.count());
+
+        // Checks if the combo is indexed by both products
+        assertEquals(combo, comboIndex.findByProduct(PRODUCT_1.getId()).get(0));
+        assertEquals(combo, comboIndex.findByProduct(PRODUCT_2.getId()).get(0));
+    }
+
+    /**
+     * Check the creation of a buy X get Y combo
+     */
+    @Test
+    public void createBuyXGetYTest() {
+        var combo = comboService.createCombo(NewCombo.builder()
+                .name("Buy 2 get 1")
+                .type(ComboType.BUY_X_GET_Y)
+                .items(List.of(ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.TWO).build()))
+                .freeAmount(BigInteger.ONE)
+                .build());
+
+        assertNotNull(combo.getId());
+        assertEquals(BigInteger.valueOf(3), combo.getRequiredAmount(combo.getItems().get(0)));
+    }
+
+    /**
+     * Check the validation of the combo data
+     */
+    @Test
+    public void createComboInvalidTest() {
+        var noName = newBundle(BigInteger.TEN);
+        noName.setName(" ");
+        assertThrows(ErrorMessage.ERROR_COMBO_INVALID_NAME, () -> comboService.createCombo(noName));
+
+        var noType = newBundle(BigInteger.TEN);
+        noType.setType(null);
+        assertThrows(ErrorMessage.ERROR_COMBO_INVALID_TYPE, () -> comboService.createCombo(noType));
+
+        var repeatedProducts = newBundle(BigInteger.TEN);
+        repeatedProducts.setItems(List.of(
+                ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build(),
+                ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build()));
+        assertThrows(ErrorMessage.ERROR_COMBO_INVALID_ITEMS, () -> comboService.createCombo(repeatedProducts));
+
+        var zeroAmount = newBundle(BigInteger.TEN);
+        zeroAmount.setItems(List.of(ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ZERO).build()));
+        assertThrows(ErrorMessage.ERROR_COMBO_INVALID_ITEMS, () -> comboService.createCombo(zeroAmount));
+
+        var invalidProduct = newBundle(BigInteger.TEN);
+        invalidProduct.setItems(List.of(ComboProduct.builder().productId("INVALID_ID").amount(BigInteger.ONE).build()));
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> comboService.createCombo(invalidProduct));
+
+        // The discount must be less than the value of the products
+        var bundleValue = PRODUCT_1.getPrice().add(PRODUCT_2.getPrice());
+        assertThrows(ErrorMessage.ERROR_COMBO_INVALID_DISCOUNT, () -> comboService.createCombo(newBundle(bundleValue)));
+        assertThrows(ErrorMessage.ERROR_COMBO_INVALID_DISCOUNT, () -> comboService.createCombo(newBundle(BigInteger.ZERO)));
+
+        var noFreeAmount = NewCombo.builder()
+                .name("Buy 2 get 1")
+                .type(ComboType.BUY_X_GET_Y)
+                .items(List.of(ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.TWO).build()))
+                .build();
+        assertThrows(ErrorMessage.ERROR_COMBO_INVALID_FREE_AMOUNT, () -> comboService.createCombo(noFreeAmount));
+
+        assertEquals(0, comboRepository.count());
+    }
+
+    /**
+     * Creates the data of a bundle with both products
+     *
+     * @param discount The discount of the bundle
+     * @return Returns the combo data
+     */
+    private NewCombo newBundle(BigInteger discount) {
+        return NewCombo.builder()
+                .name("Bundle")
+                .type(ComboType.BUNDLE)
+                .items(List.of(
+                        ComboProduct.builder().productId(PRODUCT_1.getId()).amount(BigInteger.ONE).build(),
+                        ComboProduct.builder().productId(PRODUCT_2.getId()).amount(BigInteger.ONE).build()))
+                .discount(discount)
+                .build();
+    }
+
+}
@@ -0,0 +1,291 @@
+package br.zapparolli.service;
+
+import br.zapparolli.exception.QikServeException;
+import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.repository.BasketRepository;
+import br.zapparolli.resource.client.ProductsRestClient;
+import br.zapparolli.utils.DatabaseUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.junit.mockito.InjectMock;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.persistence.PersistenceException;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the basket operations with the changes written to the basket journal
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+@TestProfile(OpenBasketJournalTest.JournalProfile.class)
+public class OpenBasketJournalTest {
+
+    @Inject
+    BasketService basketService;
+
+    @Inject
+    OpenBasketStore openBasketStore;
+
+    @Inject
+    BasketRepository basketRepository;
+
+    @Inject
+    DatabaseUtils databaseUtils;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @InjectMock
+    @RestClient
+    ProductsRestClient productsRestClient;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        // Starts every test from an empty journal
+        openBasketStore.discard();
+        openBasketStore.snapshot();
+        databaseUtils.clearDB();
+        ProductRestClientMockUtil.configMock(productsRestClient);
+    }
+
+    /**
+     * Check if the open basket is not written to the database and is restored from the journal
+     */
+    @Test
+    public void replayTest() {
+        basketService.addItem(newBasketItem("JOURNAL_REPLAY", PRODUCT_1.getId()));
+        basketService.addItem(newBasketItem("JOURNAL_REPLAY", PRODUCT_1.getId()));
+        basketService.addItem(newBasketItem("JOURNAL_REPLAY", PRODUCT_2.getId()));
+        assertTrue(basketRepository.findByCustomer("JOURNAL_REPLAY").isEmpty());
+
+        // Loses the baskets in memory and rebuilds them, as a restart would do
+        openBasketStore.recover();
+
+        var basket = basketService.getOpenBasket("JOURNAL_REPLAY");
+        assertEquals(2, basket.getItems().size());
+        assertEquals(BigInteger.TWO, basket.getItems().get(0).getAmount());
+        assertEquals(PRODUCT_1.getPrice().multiply(BigInteger.TWO).add(PRODUCT_2.getPrice()), basket.getTotal());
+    }
+
+    /**
+     * Check if the basket is restored from the snapshot and the events appended after it, without applying twice
+     * the events already in the snapshot
+     */
+    @Test
+    public void snapshotReplayTest() {
+        basketService.addItem(newBasketItem("JOURNAL_SNAPSHOT", PRODUCT_1.getId()));
+        openBasketStore.snapshot();
+        basketService.addItem(newBasketItem("JOURNAL_SNAPSHOT", PRODUCT_1.getId()));
+
+        openBasketStore.recover();
+        openBasketStore.recover();
+
+        var basket = basketService.getOpenBasket("JOURNAL_SNAPSHOT");
+        assertEquals(BigInteger.TWO, basket.getItems().get(0).getAmount());
+        assertEquals(PRODUCT_1.getPrice().multiply(BigInteger.TWO), basket.getTotal());
+    }
+
+    /**
+     * Check if the checkout is written at once and is not written again by the replay
+     */
+    @Test
+    public void checkoutReplayTest() {
+        basketService.addItem(newBasketItem("JOURNAL_CHECKOUT", PRODUCT_1.getId()));
+        var closedBasket = basketService.checkout("JOURNAL_CHECKOUT");
+        assertFalse(closedBasket.isOpen());
+
+        openBasketStore.recover();
+
+        assertThrows(QikServeException.class, () -> basketService.getOpenBasket("JOURNAL_CHECKOUT"));
+        var storedBaskets = basketRepository.findByCustomer("JOURNAL_CHECKOUT");
+        assertEquals(1, storedBaskets.size());
+        assertFalse(storedBaskets.get(0).isOpen());
+        assertEquals(PRODUCT_1.getPrice(), storedBaskets.get(0).getTotal());
+    }
+
+    /**
+     * Check if a checkout that could not be written is not completed by the replay
+     */
+    @Test
+    public void checkoutFailureReplayTest() {
+        basketService.addItem(newBasketItem("JOURNAL_CHECKOUT_FAILURE", PRODUCT_1.getId()));
+        openBasketStore.evictIdle();
+        basketService.addItem(newBasketItem("JOURNAL_CHECKOUT_FAILURE", PRODUCT_1.getId()));
+
+        // The basket written when it left memory is changed, so the checkout fails
+        databaseUtils.changeBasketVersion("JOURNAL_CHECKOUT_FAILURE");
+        assertThrows(PersistenceException.class, () -> basketService.checkout("JOURNAL_CHECKOUT_FAILURE"));
+
+        openBasketStore.recover();
+
+        var basket = basketService.getOpenBasket("JOURNAL_CHECKOUT_FAILURE");
+        assertEquals(BigInteger.TWO, basket.getItems().get(0).getAmount());
+        var storedBaskets = basketRepository.findByCustomer("JOURNAL_CHECKOUT_FAILURE");
+        assertEquals(1, storedBaskets.size());
+        assertTrue(storedBaskets.get(0).isOpen());
+    }
+
+    /**
+     * Check if the basket of a new customer is not kept when its first addition can't be appended to the journal
+     */
+    @Test
+    public void appendFailureNewBasketTest() {
+        openBasketStore.getJournal().close();
+        assertThrows(IllegalStateException.class, () -> basketService.addItem(newBasketItem("JOURNAL_APPEND_FAILURE", PRODUCT_1.getId())));
+        assertThrows(QikServeException.class, () -> basketService.getOpenBasket("JOURNAL_APPEND_FAILURE"));
+        assertEquals(0, openBasketStore.getBasketCount());
+
+        // Opens the journal again for the next tests
+        openBasketStore.recover();
+        assertThrows(QikServeException.class, () -> basketService.getOpenBasket("JOURNAL_APPEND_FAILURE"));
+    }
+
+    /**
+     * Check if an idle basket is written when it leaves memory, and the replay doesn't apply again the events written
+     */
+    @Test
+    public void evictIdleReplayTest() {
+        basketService.addItem(newBasketItem("JOURNAL_EVICT", PRODUCT_1.getId()));
+        basketService.addItem(newBasketItem("JOURNAL_EVICT", PRODUCT_1.getId()));
+
+        openBasketStore.evictIdle();
+        assertEquals(0, openBasketStore.getBasketCount());
+        var storedBaskets = basketRepository.findByCustomer("JOURNAL_EVICT");
+        assertEquals(1, storedBaskets.size());
+        assertTrue(storedBaskets.get(0).isOpen());
+        assertEquals(PRODUCT_1.getPrice().multiply(BigInteger.TWO), storedBaskets.get(0).getTotal());
+
+        // The basket is loaded again, and only the event appended after it was written is replayed
+        basketService.addItem(newBasketItem("JOURNAL_EVICT", PRODUCT_1.getId()));
+        openBasketStore.recover();
+
+        var basket = basketService.getOpenBasket("JOURNAL_EVICT");
+        assertEquals(BigInteger.valueOf(3), basket.getItems().get(0).getAmount());
+        assertEquals(1, basketRepository.findByCustomer("JOURNAL_EVICT").size());
+    }
+
+    /**
+     * Check if concurrent additions are all restored from the journal
+     */
+    @Test
+    public void addItemConcurrentTest() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var tasks = IntStream.range(0, 20)
+                    .mapToObj(index -> (Callable<Object>) () -> basketService.addItem(newBasketItem("JOURNAL_CONCURRENT_" + (index % 4), PRODUCT_1.getId())))
+                    .collect(Collectors.toList());
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        openBasketStore.recover();
+
+        for (var customer = 0; customer < 4; customer++) {
+            var basket = basketService.getOpenBasket("JOURNAL_CONCURRENT_" + customer);
+            assertEquals(BigInteger.valueOf(5), basket.getItems().get(0).getAmount());
+        }
+    }
+
+    /**
+     * Check if concurrent additions to baskets of the same shard share the disk syncs of the journal
+     */
+    @Test
+    public void addItemGroupCommitTest() throws Exception {
+        var eventsBefore = getJournalCount("basket.journal.events");
+        var syncsBefore = getJournalCount("basket.journal.syncs");
+
+        // The additions of a single customer are all in the same shard
+        var executor = Executors.newFixedThreadPool(16);
+        try {
+            var tasks = IntStream.range(0, 200)
+                    .mapToObj(index -> (Callable<Object>) () -> basketService.addItem(newBasketItem("JOURNAL_GROUP_COMMIT", PRODUCT_1.getId())))
+                    .collect(Collectors.toList());
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        var events = getJournalCount("basket.journal.events") - eventsBefore;
+        var syncs = getJournalCount("basket.journal.syncs") - syncsBefore;
+        assertEquals(200, events);
+        assertTrue(syncs < events, String.format("The %.0f events should share the syncs, but took %.0f syncs", events, syncs));
+        assertEquals(BigInteger.valueOf(200), basketService.getOpenBasket("JOURNAL_GROUP_COMMIT").getItems().get(0).getAmount());
+    }
+
+    /**
+     * Get the value of a counter of the journal
+     *
+     * @param name The name of the counter
+     * @return Returns the value
+     */
+    private double getJournalCount(String name) {
+        return meterRegistry.get(name).functionCounter().count();
+    }
+
+    /**
+     * Creates the data of a single unit of a product
+     *
+     * @param customerId The customer identification
+     * @param productId The product identification
+     * @return Returns the item data
+     */
+    private NewBasketItem newBasketItem(String customerId, String productId) {
+        return NewBasketItem.builder()
+                .customerId(customerId)
+                .productId(productId)
+                .amount(BigInteger.ONE)
+                .build();
+    }
+
+    /**
+     * Profile that writes the journal to a temporary directory, without snapshots in background during the tests
+     */
+    public static class JournalProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            try {
+                return Map.of(
+                        "qikserve.basket-journal.enabled", "true",
+                        "qikserve.basket-journal.directory", Files.createTempDirectory("basket-journal").toString(),
+                        "qikserve.basket-journal.snapshot-check", "1h",
+                        "qikserve.basket-store.idle-timeout", "PT0S",
+                        "qikserve.basket-store.evict-every", "1h");
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,208 @@
+package br.zapparolli.service;
+
+import br.zapparolli.mock.ProductRestClientMockUtil;
+import br.zapparolli.model.NewBasketItem;
+import br.zapparolli.repository.BasketRepository;
+import br.zapparolli.resource.client.ProductsRestClient;
+import br.zapparolli.utils.DatabaseUtils;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.junit.mockito.InjectMock;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the basket operations with the open baskets kept in memory
+ *
+ * @author lczapparolli
+ */
+@QuarkusTest
+@TestProfile(OpenBasketStoreTest.StoreProfile.class)
+public class OpenBasketStoreTest {
+
+    @Inject
+    BasketService basketService;
+
+    @Inject
+    OpenBasketStore openBasketStore;
+
+    @Inject
+    BasketRepository basketRepository;
+
+    @Inject
+    DatabaseUtils databaseUtils;
+
+    @InjectMock
+    @RestClient
+    ProductsRestClient productsRestClient;
+
+    @BeforeEach
+    @Transactional
+    public void setup() {
+        openBasketStore.discard();
+        databaseUtils.clearDB();
+        ProductRestClientMockUtil.configMock(productsRestClient);
+    }
+
+    /**
+     * Check if the changes are written to the database only when the store is flushed
+     */
+    @Test
+    public void addItemWriteBehindTest() {
+        var basket = basketService.addItem(newBasketItem("WRITE_BEHIND", PRODUCT_1.getId()));
+        assertEquals(BigInteger.ONE, basket.getItems().get(0).getAmount());
+        assertTrue(basketRepository.findByCustomer("WRITE_BEHIND").isEmpty());
+
+        openBasketStore.flush();
+        var storedBaskets = basketRepository.findByCustomer("WRITE_BEHIND");
+        assertEquals(1, storedBaskets.size());
+        assertEquals(PRODUCT_1.getPrice(), storedBaskets.get(0).getTotal());
+
+        // The next changes are written to the same basket
+        basketService.addItem(newBasketItem("WRITE_BEHIND", PRODUCT_2.getId()));
+        openBasketStore.flush();
+        storedBaskets = basketRepository.findByCustomer("WRITE_BEHIND");
+        assertEquals(1, storedBaskets.size());
+        assertEquals(PRODUCT_1.getPrice().add(PRODUCT_2.getPrice()), storedBaskets.get(0).getTotal());
+    }
+
+    /**
+     * Check if the basket is written at once when it's checked out
+     */
+    @Test
+    public void checkoutTest() {
+        basketService.addItem(newBasketItem("STORE_CHECKOUT", PRODUCT_1.getId()));
+
+        var closedBasket = basketService.checkout("STORE_CHECKOUT");
+        assertFalse(closedBasket.isOpen());
+
+        // The basket is stored without flushing the store
+        var storedBaskets = basketRepository.findByCustomer("STORE_CHECKOUT");
+        assertEquals(1, storedBaskets.size());
+        assertFalse(storedBaskets.get(0).isOpen());
+        assertEquals(PRODUCT_1.getPrice(), storedBaskets.get(0).getTotal());
+
+        // A new addition opens a new basket
+        var newBasket = basketService.addItem(newBasketItem("STORE_CHECKOUT", PRODUCT_1.getId()));
+        assertTrue(newBasket.isOpen());
+        assertEquals(BigInteger.ONE, newBasket.getItems().get(0).getAmount());
+    }
+
+    /**
+     * Check if the basket is recovered as it was in the last write after a crash
+     */
+    @Test
+    public void crashRecoveryTest() {
+        basketService.addItem(newBasketItem("STORE_CRASH", PRODUCT_1.getId()));
+        openBasketStore.flush();
+        basketService.addItem(newBasketItem("STORE_CRASH", PRODUCT_1.getId()));
+
+        // Loses the baskets in memory, as a crash would do
+        openBasketStore.discard();
+
+        var recoveredBasket = basketService.getOpenBasket("STORE_CRASH");
+        assertEquals(BigInteger.ONE, recoveredBasket.getItems().get(0).getAmount());
+        assertEquals(PRODUCT_1.getPrice(), recoveredBasket.getTotal());
+
+        // The recovered basket keeps being changed and written
+        basketService.addItem(newBasketItem("STORE_CRASH", PRODUCT_1.getId()));
+        openBasketStore.flush();
+        var storedBaskets = basketRepository.findByCustomer("STORE_CRASH");
+        assertEquals(1, storedBaskets.size());
+        assertEquals(PRODUCT_1.getPrice().multiply(BigInteger.TWO), storedBaskets.get(0).getTotal());
+    }
+
+    /**
+     * Check if an idle basket leaves memory only after its changes are written, and keeps being changed afterwards
+     */
+    @Test
+    public void evictIdleTest() {
+        basketService.addItem(newBasketItem("STORE_EVICT", PRODUCT_1.getId()));
+
+        // The changes are not written yet, so the basket is kept
+        openBasketStore.evictIdle();
+        assertEquals(1, openBasketStore.getBasketCount());
+
+        openBasketStore.flush();
+        openBasketStore.evictIdle();
+        assertEquals(0, openBasketStore.getBasketCount());
+
+        // The basket is loaded again on its next use
+        var basket = basketService.addItem(newBasketItem("STORE_EVICT", PRODUCT_1.getId()));
+        assertEquals(BigInteger.TWO, basket.getItems().get(0).getAmount());
+        openBasketStore.flush();
+        var storedBaskets = basketRepository.findByCustomer("STORE_EVICT");
+        assertEquals(1, storedBaskets.size());
+        assertEquals(PRODUCT_1.getPrice().multiply(BigInteger.TWO), storedBaskets.get(0).getTotal());
+    }
+
+    /**
+     * Check if concurrent additions to the same basket don't lose any unit
+     */
+    @Test
+    public void addItemConcurrentTest() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var tasks = IntStream.range(0, 20)
+                    .mapToObj(index -> (Callable<Object>) () -> basketService.addItem(newBasketItem("STORE_CONCURRENT", PRODUCT_1.getId())))
+                    .collect(Collectors.toList());
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        var basket = basketService.getOpenBasket("STORE_CONCURRENT");
+        assertEquals(BigInteger.valueOf(20), basket.getItems().get(0).getAmount());
+    }
+
+    /**
+     * Creates the data of a single unit of a product
+     *
+     * @param customerId The customer identification
+     * @param productId The product identification
+     * @return Returns the item data
+     */
+    private NewBasketItem newBasketItem(String customerId, String productId) {
+        return NewBasketItem.builder()
+                .customerId(customerId)
+                .productId(productId)
+                .amount(BigInteger.ONE)
+                .build();
+    }
+
+    /**
+     * Profile that keeps the open baskets in memory, without writing them in background during the tests
+     */
+    public static class StoreProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "qikserve.basket-store.enabled", "true",
+                    "qikserve.basket-store.flush-every", "1h",
+                    "qikserve.basket-store.idle-timeout", "PT0S",
+                    "qikserve.basket-store.evict-every", "1h");
+        }
+
+    }
+
+}
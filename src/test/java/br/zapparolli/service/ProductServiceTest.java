@@ -3,19 +3,34 @@ package br.zapparolli.service;
 import br.zapparolli.exception.ErrorMessage;
 import br.zapparolli.mock.ProductRestClientMockUtil;
 import br.zapparolli.resource.client.ProductsRestClient;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.inject.Inject;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
 import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_1;
+import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
 import static br.zapparolli.utils.AssertionUtils.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for the product service
@@ -28,15 +43,25 @@ public class ProductServiceTest {
     @Inject
     ProductService productService;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
     @InjectMock
     @RestClient
     ProductsRestClient productsRestClient;
 
     @BeforeEach
     public void setup() {
+        productService.reset();
         ProductRestClientMockUtil.configMock(productsRestClient);
     }
 
+    @AfterEach
+    public void tearDown() {
+        // Avoids leaking an open circuit to other tests
+        productService.reset();
+    }
+
     /**
      * Check the response for a product query
      */
@@ -47,6 +72,166 @@ public class ProductServiceTest {
         verify(productsRestClient, times(1)).getProduct(PRODUCT_1.getId());
     }
 
+    /**
+     * Check if the requests sent to the API are timed by outcome
+     */
+    @Test
+    public void apiTimerTest() {
+        var successTimer = meterRegistry.get("products.api.requests")
+                .tag("operation", "product")
+                .tag("outcome", "success")
+                .timer();
+        var notFoundTimer = meterRegistry.get("products.api.requests")
+                .tag("operation", "product")
+                .tag("outcome", "not-found")
+                .timer();
+        var successCount = successTimer.count();
+        var notFoundCount = notFoundTimer.count();
+
+        productService.findProduct(PRODUCT_1.getId());
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> productService.findProduct("INVALID_ID"));
+
+        assertEquals(successCount + 1, successTimer.count());
+        assertEquals(notFoundCount + 1, notFoundTimer.count());
+    }
+
+    /**
+     * Check if repeated queries are served by the cache
+     */
+    @Test
+    public void findProductCachedTest() {
+        var product = productService.findProduct(PRODUCT_1.getId());
+        var cachedProduct = productService.findProduct(PRODUCT_1.getId());
+        assertEquals(product, cachedProduct);
+        verify(productsRestClient, times(1)).getProduct(PRODUCT_1.getId());
+
+        // Checks if the hit was counted
+        var hits = meterRegistry.get("cache.gets")
+                .tag("cache", "products")
+                .tag("result", "hit")
+                .functionCounter()
+                .count();
+        assertTrue(hits >= 1);
+    }
+
+    /**
+     * Check the resolution of several products at once
+     */
+    @Test
+    public void findProductsTest() {
+        var products = productService.findProducts(List.of(PRODUCT_1.getId(), PRODUCT_2.getId(), PRODUCT_1.getId()));
+        assertEquals(2, products.size());
+        assertEquals(PRODUCT_1, products.get(PRODUCT_1.getId()));
+        assertEquals(PRODUCT_2, products.get(PRODUCT_2.getId()));
+
+        // Checks if the duplicated id was queried only once
+        verify(productsRestClient, times(1)).getProduct(PRODUCT_1.getId());
+        verify(productsRestClient, times(1)).getProduct(PRODUCT_2.getId());
+    }
+
+    /**
+     * Check the resolution of several products when one of them is invalid
+     */
+    @Test
+    public void findProductsNotFoundTest() {
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> productService.findProducts(List.of(PRODUCT_1.getId(), "INVALID_ID")));
+    }
+
+    /**
+     * Check if concurrent lookups of the same product share a single request, including not found errors
+     */
+    @Test
+    public void findProductCoalescedTest() throws InterruptedException {
+        // Delays the API response so the lookups overlap
+        when(productsRestClient.getProduct("SLOW_INVALID_ID")).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).build());
+        });
+
+        var executor = Executors.newFixedThreadPool(5);
+        try {
+            var lookups = new ArrayList<Callable<Void>>();
+            for (var i = 0; i < 5; i++) {
+                lookups.add(() -> {
+                    assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> productService.findProduct("SLOW_INVALID_ID"));
+                    return null;
+                });
+            }
+
+            for (var lookup : executor.invokeAll(lookups)) {
+                assertDoesNotThrow(() -> lookup.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(productsRestClient, times(1)).getProduct("SLOW_INVALID_ID");
+    }
+
+    /**
+     * Check the response for a product query using the non-blocking client
+     */
+    @Test
+    public void findProductAsyncTest() {
+        var product = productService.findProductAsync(PRODUCT_1.getId()).await().indefinitely();
+        assertEquals(PRODUCT_1, product);
+        verify(productsRestClient, times(1)).getProductAsync(PRODUCT_1.getId());
+
+        // Checks if the product is now cached for the blocking lookups too
+        productService.findProduct(PRODUCT_1.getId());
+        verify(productsRestClient, never()).getProduct(PRODUCT_1.getId());
+    }
+
+    /**
+     * Check the response for an invalid product using the non-blocking client
+     */
+    @Test
+    public void findProductAsyncNotFoundTest() {
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> productService.findProductAsync("INVALID_ID").await().indefinitely());
+        assertThrows(ErrorMessage.ERROR_PRODUCT_API, () -> productService.findProductAsync("API_ERROR").await().indefinitely());
+    }
+
+    /**
+     * Check if the loaded catalog serves the product lookups
+     */
+    @Test
+    public void loadCatalogTest() {
+        assertEquals(2, productService.loadCatalog());
+
+        assertEquals(PRODUCT_1, productService.findProduct(PRODUCT_1.getId()));
+        assertEquals(PRODUCT_2, productService.findProduct(PRODUCT_2.getId()));
+        verify(productsRestClient, never()).getProduct(anyString());
+    }
+
+    /**
+     * Check if the last known data is served when the API fails
+     */
+    @Test
+    public void findProductStaleTest() {
+        productService.findProduct(PRODUCT_1.getId());
+        productService.invalidate(PRODUCT_1.getId());
+
+        // Makes the API fail
+        when(productsRestClient.getProduct(PRODUCT_1.getId()))
+                .thenThrow(new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE).build()));
+
+        assertEquals(PRODUCT_1, productService.findProduct(PRODUCT_1.getId()));
+        verify(productsRestClient, times(2)).getProduct(PRODUCT_1.getId());
+    }
+
+    /**
+     * Check if the API stops being called after consecutive failures
+     */
+    @Test
+    public void findProductCircuitOpenTest() {
+        for (var i = 0; i < 6; i++) {
+            assertThrows(ErrorMessage.ERROR_PRODUCT_API, () -> productService.findProduct("API_ERROR"));
+        }
+
+        // The last call is rejected without reaching the API
+        verify(productsRestClient, times(5)).getProduct("API_ERROR");
+    }
+
     /**
      * Check the response for an invalid product
      */
@@ -56,6 +241,19 @@ public class ProductServiceTest {
         verify(productsRestClient, times(1)).getProduct("INVALID_ID");
     }
 
+    /**
+     * Check if a product not found is remembered and the API is not called again
+     */
+    @Test
+    public void findProductNotFoundCachedTest() {
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> productService.findProduct("INVALID_ID"));
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> productService.findProduct("INVALID_ID"));
+        assertThrows(ErrorMessage.ERROR_PRODUCT_NOT_FOUND, () -> productService.findProductAsync("INVALID_ID").await().indefinitely());
+
+        verify(productsRestClient, times(1)).getProduct("INVALID_ID");
+        verify(productsRestClient, never()).getProductAsync("INVALID_ID");
+    }
+
     /**
      * Check the response for a problem with the products API
      */
@@ -0,0 +1,76 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Promotion;
+import br.zapparolli.repository.PromotionRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the in-memory index of the promotions
+ *
+ * @author lczapparolli
+ */
+public class PromotionIndexTest {
+
+    /**
+     * Check if a promotion created while the index is rebuilt is kept by the rebuilt index
+     */
+    @Test
+    public void createdDuringRebuildTest() {
+        var stored = newPromotion("PRODUCT_1", 2);
+        var created = newPromotion("PRODUCT_2", 5);
+
+        var promotionIndex = new PromotionIndex();
+        promotionIndex.promotionRepository = Mockito.mock(PromotionRepository.class);
+        // The promotion is committed after the database was read, so the read doesn't return it
+        Mockito.when(promotionIndex.promotionRepository.streamAll()).thenAnswer(invocation -> {
+            promotionIndex.onPromotionCreated(created);
+            return Stream.of(stored);
+        });
+
+        promotionIndex.rebuild();
+
+        assertEquals(stored, promotionIndex.find("PRODUCT_1", BigInteger.TWO).orElseThrow());
+        assertEquals(created, promotionIndex.find("PRODUCT_2", BigInteger.valueOf(5)).orElseThrow());
+    }
+
+    /**
+     * Check if a promotion created during the rebuild and also read from the database is kept once
+     */
+    @Test
+    public void createdAndReadDuringRebuildTest() {
+        var created = newPromotion("PRODUCT_1", 2);
+
+        var promotionIndex = new PromotionIndex();
+        promotionIndex.promotionRepository = Mockito.mock(PromotionRepository.class);
+        Mockito.when(promotionIndex.promotionRepository.streamAll()).thenAnswer(invocation -> {
+            promotionIndex.onPromotionCreated(created);
+            return Stream.of(created);
+        });
+
+        promotionIndex.rebuild();
+
+        assertEquals(created, promotionIndex.find("PRODUCT_1", BigInteger.TEN).orElseThrow());
+    }
+
+    /**
+     * Creates a promotion tier
+     *
+     * @param productId The product identification
+     * @param minAmount The minimum amount of the tier
+     * @return Returns the promotion
+     */
+    private static Promotion newPromotion(String productId, long minAmount) {
+        return Promotion.builder()
+                .productId(productId)
+                .minAmount(BigInteger.valueOf(minAmount))
+                .unitDiscount(BigInteger.ONE)
+                .build();
+    }
+
+}
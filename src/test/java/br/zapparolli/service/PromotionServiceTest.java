@@ -20,6 +20,7 @@ import static br.zapparolli.mock.ProductRestClientMockUtil.PRODUCT_2;
 import static br.zapparolli.utils.AssertionUtils.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests for the Promotion service
@@ -68,6 +69,47 @@ public class PromotionServiceTest {
         assertEquals(newPromotion.getUnitDiscount(), promotion.getUnitDiscount());
     }
 
+    /**
+     * Check if the created promotion is found by the amount
+     */
+    @Test
+    public void getPromotionTest() {
+        var promotion = promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_1.getId())
+                .minAmount(BigInteger.TWO)
+                .unitDiscount(BigInteger.ONE)
+                .build());
+
+        // Checks the amounts below and above the minimum
+        assertTrue(promotionService.getPromotion(PRODUCT_1.getId(), BigInteger.ONE).isEmpty());
+        assertEquals(promotion, promotionService.getPromotion(PRODUCT_1.getId(), BigInteger.TWO).orElseThrow());
+        assertEquals(promotion, promotionService.getPromotion(PRODUCT_1.getId(), BigInteger.TEN).orElseThrow());
+
+        // Checks a product without promotion
+        assertTrue(promotionService.getPromotion(PRODUCT_2.getId(), BigInteger.TEN).isEmpty());
+    }
+
+    /**
+     * Check the creation of several tiers for the same product
+     */
+    @Test
+    public void getPromotionTiersTest() {
+        var lowerTier = promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_2.getId())
+                .minAmount(BigInteger.valueOf(5))
+                .unitDiscount(BigInteger.ONE)
+                .build());
+        var higherTier = promotionService.createPromotion(NewPromotion.builder()
+                .productId(PRODUCT_2.getId())
+                .minAmount(BigInteger.TEN)
+                .unitDiscount(BigInteger.TEN)
+                .build());
+
+        assertTrue(promotionService.getPromotion(PRODUCT_2.getId(), BigInteger.valueOf(4)).isEmpty());
+        assertEquals(lowerTier, promotionService.getPromotion(PRODUCT_2.getId(), BigInteger.valueOf(9)).orElseThrow());
+        assertEquals(higherTier, promotionService.getPromotion(PRODUCT_2.getId(), BigInteger.valueOf(100)).orElseThrow());
+    }
+
     /**
      * Check the error if the product is invalid
      */
@@ -0,0 +1,86 @@
+package br.zapparolli.service;
+
+import br.zapparolli.entity.Promotion;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the promotion tiers
+ *
+ * @author lczapparolli
+ */
+public class PromotionTiersTest {
+
+    private static final Promotion TIER_5 = newPromotion(5, 10);
+    private static final Promotion TIER_10 = newPromotion(10, 20);
+    private static final Promotion TIER_20 = newPromotion(20, 15);
+
+    /**
+     * Check the tier found for each amount
+     */
+    @Test
+    public void findTest() {
+        // The tiers are out of order on purpose
+        var tiers = PromotionTiers.of(List.of(TIER_10, TIER_20, TIER_5));
+
+        assertTrue(tiers.find(BigInteger.ONE).isEmpty());
+        assertTrue(tiers.find(BigInteger.valueOf(4)).isEmpty());
+        assertEquals(TIER_5, tiers.find(BigInteger.valueOf(5)).orElseThrow());
+        assertEquals(TIER_5, tiers.find(BigInteger.valueOf(9)).orElseThrow());
+        assertEquals(TIER_10, tiers.find(BigInteger.TEN).orElseThrow());
+        assertEquals(TIER_10, tiers.find(BigInteger.valueOf(19)).orElseThrow());
+        assertEquals(TIER_10, tiers.find(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)).orElseThrow());
+    }
+
+    /**
+     * Check if a higher tier with a smaller discount doesn't reduce the discount
+     */
+    @Test
+    public void findBestDiscountTest() {
+        var tiers = PromotionTiers.of(List.of(TIER_5, TIER_10, TIER_20));
+
+        assertEquals(TIER_10, tiers.find(BigInteger.valueOf(20)).orElseThrow());
+    }
+
+    /**
+     * Check the addition of tiers
+     */
+    @Test
+    public void withTest() {
+        var tiers = PromotionTiers.of(List.of(TIER_5));
+        var updated = tiers.with(TIER_10);
+
+        // The original tiers are not changed
+        assertEquals(1, tiers.size());
+        assertEquals(TIER_5, tiers.find(BigInteger.TEN).orElseThrow());
+        assertEquals(2, updated.size());
+        assertEquals(TIER_10, updated.find(BigInteger.TEN).orElseThrow());
+
+        // A tier with the same minimum amount is replaced
+        var replacement = newPromotion(10, 30);
+        var replaced = updated.with(replacement);
+        assertEquals(2, replaced.size());
+        assertEquals(replacement, replaced.find(BigInteger.TEN).orElseThrow());
+    }
+
+    /**
+     * Creates a promotion with the given data
+     *
+     * @param minAmount The minimum amount
+     * @param unitDiscount The discount per unit
+     * @return Returns the promotion
+     */
+    private static Promotion newPromotion(long minAmount, long unitDiscount) {
+        return Promotion.builder()
+                .productId("PRODUCT")
+                .minAmount(BigInteger.valueOf(minAmount))
+                .unitDiscount(BigInteger.valueOf(unitDiscount))
+                .build();
+    }
+
+}
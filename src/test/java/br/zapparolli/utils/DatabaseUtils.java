@@ -1,10 +1,14 @@
 package br.zapparolli.utils;
 
 import br.zapparolli.repository.BasketRepository;
+import br.zapparolli.repository.ComboRepository;
 import br.zapparolli.repository.PromotionRepository;
+import br.zapparolli.service.ComboIndex;
+import br.zapparolli.service.PromotionIndex;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.transaction.Transactional;
 
 /**
  * Utility class for database operations
@@ -20,13 +24,53 @@ public class DatabaseUtils {
     @Inject
     BasketRepository basketRepository;
 
+    @Inject
+    ComboRepository comboRepository;
+
+    @Inject
+    PromotionIndex promotionIndex;
+
+    @Inject
+    ComboIndex comboIndex;
+
     /**
      * Clear all database data
      */
     public void clearDB() {
         basketRepository.delete("from BasketItem i");
+        basketRepository.delete("from BasketCombo c");
         basketRepository.deleteAll();
         promotionRepository.deleteAll();
+        promotionIndex.rebuild();
+        // The combo items are only removed when the entities are deleted one by one
+        comboRepository.listAll().forEach(comboRepository::delete);
+        comboIndex.rebuild();
+    }
+
+    /**
+     * Remove the product name of all basket items, simulating rows stored before the column existed
+     */
+    @Transactional
+    public void clearProductNames() {
+        basketRepository.update("update BasketItem i set i.productName = null");
+    }
+
+    /**
+     * Remove the values of all baskets, simulating rows stored before the columns existed
+     */
+    @Transactional
+    public void clearBasketValues() {
+        basketRepository.update("update Basket b set b.rawValue = null, b.discount = null, b.total = null");
+    }
+
+    /**
+     * Changes the version of the baskets of a customer, simulating a change made by another instance
+     *
+     * @param customerId The customer identification
+     */
+    @Transactional
+    public void changeBasketVersion(String customerId) {
+        basketRepository.update("update Basket b set b.version = b.version + 1 where b.customerId = ?1", customerId);
     }
 
 }
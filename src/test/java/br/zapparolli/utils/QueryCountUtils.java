@@ -0,0 +1,45 @@
+package br.zapparolli.utils;
+
+import br.zapparolli.metrics.QueryStatistics;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.function.Executable;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Utility class to check the database work of an operation, read from the Hibernate statistics
+ *
+ * @author lczapparolli
+ */
+@ApplicationScoped
+public class QueryCountUtils {
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    /**
+     * Check if the method prepares at most the given number of SQL statements
+     *
+     * @param maxStatements The maximum number of statements expected
+     * @param method The method to be executed
+     * @return Returns the database work done by the method
+     */
+    public QueryStatistics assertMaxStatements(long maxStatements, Executable method) {
+        var statistics = sessionFactory.getStatistics();
+        assertTrue(statistics.isStatisticsEnabled(), "The Hibernate statistics should be enabled");
+
+        // Counts only the work done by the method
+        var start = QueryStatistics.of(statistics);
+        assertDoesNotThrow(method);
+        var queries = QueryStatistics.of(statistics).since(start);
+
+        assertTrue(queries.getStatements() <= maxStatements,
+                String.format("Should have prepared at most %d statements, but prepared %d", maxStatements, queries.getStatements()));
+        return queries;
+    }
+
+}